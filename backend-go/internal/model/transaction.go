@@ -5,6 +5,7 @@ type BlockchainRequest struct {
 	UserID        string `json:"userId"`
 	Amount        int64  `json:"amount"`
 	TransactionID string `json:"transactionId"`
+	MerkleRoot    string `json:"merkleRoot,omitempty"` // set when anchoring a batch of receipts
 }
 
 // BlockchainResponse represents the response to Java service
@@ -0,0 +1,107 @@
+package com.loyalty.bench;
+
+import com.loyalty.model.PointBalance;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.repository.PointBalanceRepository;
+import com.loyalty.repository.PointTransactionRepository;
+import com.loyalty.service.LeaderboardService;
+import com.loyalty.service.PointBalanceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@code PointsService.getBalance} with Mongo stubbed out, so only the balance logic is measured:
+ * {@code rebuild} folds the full ledger (no checkpoint yet), {@code snapshotTail} folds a tail of
+ * unapplied rows on top of a checkpoint, the normal read path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BalanceFoldBenchmark {
+    private static final String USER = "bench-user";
+    private static final PointTransaction.TransactionType[] TYPES = PointTransaction.TransactionType.values();
+
+    @Param({"10", "1000", "100000"})
+    public int historySize;
+
+    private PointBalanceService withoutSnapshot;
+    private PointBalanceService withSnapshot;
+
+    @Setup
+    public void setUp() {
+        List<PointTransaction> history = history(historySize);
+
+        PointTransactionRepository transactions = mock(PointTransactionRepository.class);
+        when(transactions.findBalanceTransactionAmountsByUserId(USER)).thenReturn(history);
+        when(transactions.findBalanceTransactionAmountsByUserIdAfter(any(), any())).thenReturn(history);
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.insert(any(PointBalance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        PointBalanceRepository noSnapshot = mock(PointBalanceRepository.class);
+        when(noSnapshot.findById(USER)).thenReturn(Optional.empty());
+        withoutSnapshot = new PointBalanceService(noSnapshot, transactions, mongoTemplate,
+            mock(LeaderboardService.class), new SimpleMeterRegistry());
+
+        PointBalanceRepository snapshot = mock(PointBalanceRepository.class);
+        when(snapshot.findById(USER)).thenReturn(Optional.of(PointBalance.builder()
+            .userId(USER).balance(0L).appliedCount(0L).lastTimestamp(new Date(0L)).build()));
+        withSnapshot = new PointBalanceService(snapshot, transactions, mongoTemplate,
+            mock(LeaderboardService.class), new SimpleMeterRegistry());
+        // A fresh tail, so the read folds it instead of rebuilding
+        ReflectionTestUtils.setField(withSnapshot, "staleAfterMs", TimeUnit.DAYS.toMillis(1));
+    }
+
+    @Benchmark
+    public Long rebuild() {
+        return withoutSnapshot.getBalance(USER);
+    }
+
+    @Benchmark
+    public Long snapshotTail() {
+        return withSnapshot.getBalance(USER);
+    }
+
+    static List<PointTransaction> history(int size) {
+        // Fixed seed so runs compare like for like
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        List<PointTransaction> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            PointTransaction tx = new PointTransaction();
+            tx.setId(Integer.toHexString(i));
+            tx.setUserId(USER);
+            tx.setType(TYPES[random.nextInt(TYPES.length)]);
+            tx.setAmount(1L + random.nextInt(1000));
+            tx.setStatus(PointTransaction.TransactionStatus.SUCCESS);
+            tx.setTimestamp(new Date(now - (size - i) * 10L));
+            rows.add(tx);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,74 @@
+package com.loyalty.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (e.g. the last release against this build) and exits with
+ * status 1 when any benchmark present in both got worse by more than {@code --tolerance}
+ * (default 0.10 = 10%):
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java -Dexec.mainClass=com.loyalty.bench.JmhRegressionCheck \
+ *     -Dexec.args="baseline/jmh-result.json target/bench/jmh-result.json --tolerance=0.15"
+ * </pre>
+ */
+public final class JmhRegressionCheck {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: JmhRegressionCheck <baseline.json> <current.json> [--tolerance=0.10]");
+            System.exit(2);
+        }
+        double tolerance = new BenchArgs(args).doubleValue("tolerance", 0.10);
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : new TreeMap<>(current).entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW   %s%n", entry.getKey());
+                continue;
+            }
+            double oldScore = before.path("primaryMetric").path("score").asDouble();
+            double newScore = entry.getValue().path("primaryMetric").path("score").asDouble();
+            // Throughput modes improve upwards, time modes downwards
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+            double change = oldScore == 0 ? 0 : (newScore - oldScore) / oldScore;
+            double worse = higherIsBetter ? -change : change;
+            boolean regressed = worse > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%s %s  %.3f -> %.3f %s (%+.1f%%)%n",
+                regressed ? "WORSE" : "ok   ", entry.getKey(), oldScore, newScore,
+                entry.getValue().path("primaryMetric").path("scoreUnit").asText(), change * 100);
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            JsonNode params = result.path("params");
+            params.fieldNames().forEachRemaining(name ->
+                key.append(' ').append(name).append('=').append(params.path(name).asText()));
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private JmhRegressionCheck() {
+    }
+}
@@ -0,0 +1,71 @@
+package com.loyalty.bench;
+
+import com.loyalty.model.User;
+import com.loyalty.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JwtTokenProvider} token issue and validation. {@code validateUncached} cycles through
+ * distinct tokens on a provider with a zero-size claims cache, i.e. the first sighting of every
+ * token; {@code validateCached} is the steady state for a client reusing its token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+    private static final String SECRET =
+        "c9c1b2f3e4a5d6b7c8a9e0f1d2c3b4a5e6f7a8b9c0d1e2f3a4b5c6d7e8f9a0b1c2d3e4f5a6b7c8d9e0f1";
+
+    private JwtTokenProvider cachedProvider;
+    private JwtTokenProvider uncachedProvider;
+    private User user;
+    private String token;
+    private String[] distinctTokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        cachedProvider = new JwtTokenProvider(SECRET, 86400, 100_000, new SimpleMeterRegistry());
+        uncachedProvider = new JwtTokenProvider(SECRET, 86400, 0, new SimpleMeterRegistry());
+        user = User.builder().id("64b7f0c2a1e4d93b2c8f1a77").username("bench-user").enabled(true).build();
+        token = cachedProvider.generateToken(user);
+        distinctTokens = new String[4096];
+        for (int i = 0; i < distinctTokens.length; i++) {
+            distinctTokens[i] = cachedProvider.generateToken(
+                User.builder().id(Integer.toHexString(i)).username("bench-user-" + i).enabled(true).build());
+        }
+    }
+
+    @Benchmark
+    public String generate() {
+        return cachedProvider.generateToken(user);
+    }
+
+    @Benchmark
+    public Claims validateCached() {
+        return cachedProvider.getVerifiedClaims(token);
+    }
+
+    @Benchmark
+    public Claims validateUncached() {
+        String distinct = distinctTokens[next];
+        next = (next + 1) & (distinctTokens.length - 1);
+        return uncachedProvider.getVerifiedClaims(distinct);
+    }
+}
@@ -0,0 +1,356 @@
+package com.loyalty.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loyalty.Application;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test: boots the application against an in-process Mongo stand-in and a stub
+ * backend-go, drives a weighted mix of register/login/earn/redeem/transfer/history/balance traffic
+ * from {@code --users} closed-loop virtual users, and reports throughput and latency percentiles
+ * per endpoint. Exits with status 1 when a threshold is missed, so it can gate a build:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java -Dexec.mainClass=com.loyalty.bench.LoadTestHarness \
+ *     -Dexec.args="--users=200 --duration-s=60 --max-p99-ms=500 --max-p99-ms.history=200"
+ * </pre>
+ * Options (defaults in brackets):
+ * <ul>
+ *   <li>{@code --users} [100], {@code --duration-s} [60], {@code --warmup-s} [10], {@code --think-ms} [0]</li>
+ *   <li>{@code --mix} [earn:35,redeem:10,transfer:15,history:25,balance:10,login:5]</li>
+ *   <li>{@code --blockchain-delay-ms} [50], {@code --blockchain-jitter-ms} [50], {@code --blockchain-failure-rate} [0.01]</li>
+ *   <li>{@code --mongo-uri}: use a real Mongo instead of the in-memory stand-in</li>
+ *   <li>{@code --base-url}: load an already running instance instead of booting one</li>
+ *   <li>{@code --max-p99-ms[.endpoint]}, {@code --max-error-rate[.endpoint]} [0.01], {@code --min-throughput}</li>
+ *   <li>{@code --report} [target/bench/load-report.json]</li>
+ * </ul>
+ * All arguments are also passed to the application, so {@code --points.group-commit.enabled=true}
+ * and similar switches can be compared run against run.
+ */
+public final class LoadTestHarness {
+    private static final String PASSWORD = "LoadTest#2024";
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final BenchArgs options;
+    private final HttpClient http;
+    private final String baseUrl;
+    private final PublicKey publicKey;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    // Requests started before this are not recorded; registration is measured from the start
+    private volatile long recordFrom = Long.MIN_VALUE;
+
+    private LoadTestHarness(BenchArgs options, String baseUrl) throws Exception {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        for (String endpoint : List.of("register", "login", "earn", "redeem", "transfer", "history", "balance")) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+        JsonNode key = JSON.readTree(http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/public-key")).build(),
+            HttpResponse.BodyHandlers.ofByteArray()).body());
+        this.publicKey = KeyFactory.getInstance("RSA").generatePublic(
+            new X509EncodedKeySpec(Base64.getDecoder().decode(key.path("publicKey").asText())));
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs options = new BenchArgs(args);
+        String baseUrl = options.value("base-url", null);
+        MongoServer mongo = null;
+        StubBlockchainServer blockchain = null;
+        ConfigurableApplicationContext app = null;
+        int exitCode;
+        try {
+            if (baseUrl == null) {
+                String mongoUri = options.value("mongo-uri", null);
+                if (mongoUri == null) {
+                    mongo = new MongoServer(new MemoryBackend());
+                    InetSocketAddress address = mongo.bind();
+                    mongoUri = "mongodb://" + address.getHostString() + ":" + address.getPort() + "/loyalty";
+                }
+                blockchain = new StubBlockchainServer(0,
+                    options.longValue("blockchain-delay-ms", 50),
+                    options.longValue("blockchain-jitter-ms", 50),
+                    options.doubleValue("blockchain-failure-rate", 0.01));
+
+                // As command line arguments, so they win over application.yml but not over the caller
+                List<String> appArgs = new ArrayList<>(List.of(args));
+                addUnlessGiven(appArgs, "server.port", "0");
+                addUnlessGiven(appArgs, "management.server.port", "0");
+                addUnlessGiven(appArgs, "spring.data.mongodb.uri", mongoUri);
+                addUnlessGiven(appArgs, "blockchain.service.url", blockchain.url());
+                // Every virtual user shares one client IP; pass --security.rate-limit.enabled=true to load the limiter
+                addUnlessGiven(appArgs, "security.rate-limit.enabled", "false");
+                app = new SpringApplicationBuilder(Application.class).run(appArgs.toArray(String[]::new));
+                baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+                System.out.printf("application at %s, mongo %s, stub backend-go %s%n", baseUrl, mongoUri, blockchain.url());
+            }
+            exitCode = new LoadTestHarness(options, baseUrl).run();
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (blockchain != null) {
+                blockchain.close();
+            }
+            if (mongo != null) {
+                mongo.shutdownNow();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    private static void addUnlessGiven(List<String> args, String property, String value) {
+        if (args.stream().noneMatch(arg -> arg.startsWith("--" + property + "="))) {
+            args.add("--" + property + "=" + value);
+        }
+    }
+
+    private int run() throws Exception {
+        int users = options.intValue("users", 100);
+        long warmupS = options.longValue("warmup-s", 10);
+        long durationS = options.longValue("duration-s", 60);
+        long thinkMs = options.longValue("think-ms", 0);
+        Mix mix = Mix.parse(options.value("mix", "earn:35,redeem:10,transfer:15,history:25,balance:10,login:5"));
+
+        List<VirtualUser> population = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            population.add(new VirtualUser("lt-" + runId + "-" + i));
+        }
+        long registrationStart = System.nanoTime();
+        population.parallelStream().forEach(VirtualUser::register);
+        double registrationS = (System.nanoTime() - registrationStart) / 1e9;
+        population.removeIf(user -> user.token == null);
+        if (population.size() < 2) {
+            System.out.println("FAIL: registration failed for almost every user, see the application log");
+            return 1;
+        }
+
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupS);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationS);
+        recordFrom = measureFrom;
+        CountDownLatch done = new CountDownLatch(population.size());
+        for (int i = 0; i < population.size(); i++) {
+            VirtualUser user = population.get(i);
+            VirtualUser peer = population.get((i + 1) % population.size());
+            Random random = new Random(i);
+            Thread thread = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        user.perform(mix.pick(random), peer, random);
+                        if (thinkMs > 0) {
+                            Thread.sleep(thinkMs);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-user-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        return report(durationS, registrationS);
+    }
+
+    private int report(long durationS, double registrationS) throws IOException {
+        List<String> failures = new ArrayList<>();
+        Map<String, Object> report = new LinkedHashMap<>();
+        long total = 0;
+        System.out.printf("%n%-10s %9s %8s %9s %9s %9s %9s %9s%n",
+            "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (EndpointStats endpoint : stats.values()) {
+            if (endpoint.count() == 0) {
+                continue;
+            }
+            Map<String, Object> summary = endpoint.summary(endpoint.name().equals("register") ? registrationS : durationS);
+            report.put(endpoint.name(), summary);
+            total += endpoint.name().equals("register") ? 0 : endpoint.count();
+            System.out.printf("%-10s %9d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", endpoint.name(),
+                endpoint.count(), endpoint.errors(), summary.get("throughputPerSecond"),
+                endpoint.percentileMs(50), endpoint.percentileMs(95), endpoint.percentileMs(99), summary.get("maxMs"));
+
+            double maxP99 = options.doubleValue("max-p99-ms." + endpoint.name(), options.doubleValue("max-p99-ms", 0));
+            if (maxP99 > 0 && endpoint.percentileMs(99) > maxP99) {
+                failures.add(String.format("%s p99 %.1f ms > %.1f ms", endpoint.name(), endpoint.percentileMs(99), maxP99));
+            }
+            double maxErrors = options.doubleValue("max-error-rate." + endpoint.name(), options.doubleValue("max-error-rate", 0.01));
+            if (endpoint.errorRate() > maxErrors) {
+                failures.add(String.format("%s error rate %.2f%% > %.2f%%", endpoint.name(), endpoint.errorRate() * 100, maxErrors * 100));
+            }
+        }
+        double throughput = total / (double) durationS;
+        double minThroughput = options.doubleValue("min-throughput", 0);
+        if (throughput < minThroughput) {
+            failures.add(String.format("throughput %.1f req/s < %.1f req/s", throughput, minThroughput));
+        }
+        System.out.printf("total      %9d %8s %9.1f%n", total, "", throughput);
+
+        report.put("throughputPerSecond", throughput);
+        report.put("failures", failures);
+        File file = new File(options.value("report", "target/bench/load-report.json"));
+        file.getParentFile().mkdirs();
+        JSON.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        System.out.println("report written to " + file.getPath());
+
+        failures.forEach(failure -> System.out.println("FAIL: " + failure));
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    private String encryptPassword() {
+        try {
+            Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING");
+            cipher.init(Cipher.ENCRYPT_MODE, publicKey,
+                new OAEPParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT));
+            return Base64.getEncoder().encodeToString(cipher.doFinal(PASSWORD.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not encrypt password", e);
+        }
+    }
+
+    private final class VirtualUser {
+        private final String username;
+        private volatile String token;
+
+        VirtualUser(String username) {
+            this.username = username;
+        }
+
+        void register() {
+            JsonNode response = call("register", post("/api/auth/register", Map.of(
+                "username", username, "password", encryptPassword(), "email", username + "@loadtest.local"), null));
+            if (response != null) {
+                token = response.path("token").asText();
+                // Enough balance that redeems and transfers do not fail on funds
+                call(null, post("/api/points/earn", Map.of("amount", 1_000_000, "description", "load test seed"), token));
+            }
+        }
+
+        void perform(String operation, VirtualUser peer, Random random) {
+            switch (operation) {
+                case "login" -> {
+                    JsonNode response = call("login", post("/api/auth/login",
+                        Map.of("username", username, "password", encryptPassword()), null));
+                    if (response != null) {
+                        token = response.path("token").asText();
+                    }
+                }
+                case "earn" -> call("earn", post("/api/points/earn",
+                    Map.of("amount", 1 + random.nextInt(100), "description", "load test earn"), token));
+                case "redeem" -> call("redeem", post("/api/points/redeem",
+                    Map.of("amount", 1 + random.nextInt(20), "description", "load test redeem"), token));
+                case "transfer" -> call("transfer", post("/api/points/transfer/" + peer.username,
+                    Map.of("amount", 1 + random.nextInt(20), "description", "load test transfer"), token));
+                case "history" -> call("history", get("/api/points/history?limit=50", token));
+                case "balance" -> call("balance", get("/api/points/balance", token));
+                default -> throw new IllegalArgumentException("Unknown operation " + operation);
+            }
+        }
+
+        /**
+         * Sends the request and records it under {@code endpoint}, unless that is null.
+         */
+        private JsonNode call(String endpoint, HttpRequest request) {
+            long start = System.nanoTime();
+            boolean ok = false;
+            try {
+                HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                ok = response.statusCode() / 100 == 2;
+                return ok ? JSON.readTree(response.body()) : null;
+            } catch (IOException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                if (endpoint != null && start >= recordFrom) {
+                    stats.get(endpoint).record(System.nanoTime() - start, ok);
+                }
+            }
+        }
+
+        private HttpRequest post(String path, Object body, String bearer) {
+            try {
+                HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body)));
+                if (bearer != null) {
+                    builder.header("Authorization", "Bearer " + bearer);
+                }
+                return builder.build();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private HttpRequest get(String path, String bearer) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + bearer)
+                .GET()
+                .build();
+        }
+    }
+
+    /**
+     * Weighted operation mix, e.g. {@code earn:35,history:25,...}.
+     */
+    private record Mix(String[] operations, int[] cumulativeWeights) {
+        static Mix parse(String spec) {
+            String[] parts = spec.split(",");
+            String[] operations = new String[parts.length];
+            int[] cumulative = new int[parts.length];
+            int sum = 0;
+            for (int i = 0; i < parts.length; i++) {
+                String[] pair = parts[i].trim().split(":");
+                operations[i] = pair[0];
+                sum += Integer.parseInt(pair[1]);
+                cumulative[i] = sum;
+            }
+            return new Mix(operations, cumulative);
+        }
+
+        String pick(Random random) {
+            int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (ticket < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+    }
+}
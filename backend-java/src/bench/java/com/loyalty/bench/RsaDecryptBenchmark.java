@@ -0,0 +1,45 @@
+package com.loyalty.bench;
+
+import com.loyalty.security.RSAEncryptionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RSAEncryptionService#decrypt} of a login-sized password with the bundled key pair.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RsaDecryptBenchmark {
+    private RSAEncryptionService rsa;
+    private String ciphertext;
+
+    @Setup
+    public void setUp() throws Exception {
+        rsa = new RSAEncryptionService();
+        ReflectionTestUtils.setField(rsa, "privateKeyResource", new ClassPathResource("keys/private.key"));
+        ReflectionTestUtils.setField(rsa, "publicKeyResource", new ClassPathResource("keys/public.key"));
+        rsa.init();
+        ciphertext = rsa.encrypt("correct-horse-battery-staple");
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return rsa.decrypt(ciphertext);
+    }
+}
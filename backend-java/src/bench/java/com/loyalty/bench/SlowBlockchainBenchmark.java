@@ -0,0 +1,144 @@
+package com.loyalty.bench;
+
+import com.loyalty.config.BlockchainClientProperties;
+import com.loyalty.config.RestTemplateConfig;
+import com.loyalty.config.VirtualThreads;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.service.BlockchainService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request threads blocked on a slow backend-go: the same {@link BlockchainService} call driven by
+ * a fixed platform pool the size of Tomcat's default (200) and by one virtual thread per request.
+ * <p>
+ * {@code --clients} callers keep one request each in flight for {@code --duration-s} seconds;
+ * latency is measured from submission, so time spent queued for a platform worker counts. Needs
+ * JDK 21 for the virtual run:
+ * <pre>
+ * JAVA_HOME=/path/to/jdk-21 mvn -Pbenchmark test-compile exec:java \
+ *     -Dexec.mainClass=com.loyalty.bench.SlowBlockchainBenchmark \
+ *     -Dexec.args="--clients=1000 --delay-ms=200 --duration-s=20"
+ * </pre>
+ */
+public final class SlowBlockchainBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        BenchArgs options = new BenchArgs(args);
+        int clients = options.intValue("clients", 1000);
+        int platformThreads = options.intValue("platform-threads", 200);
+        long delayMs = options.longValue("delay-ms", 200);
+        long durationS = options.longValue("duration-s", 20);
+        long warmupS = options.longValue("warmup-s", 5);
+
+        try (StubBlockchainServer stub = new StubBlockchainServer(0, delayMs, 0, 0)) {
+            System.out.printf("stub backend-go at %s, %d ms per call, %d clients, %s%n",
+                stub.url(), delayMs, clients, Runtime.version());
+
+            run("platform(" + platformThreads + ")", stub, clients, durationS, warmupS, () -> new ThreadPoolExecutor(
+                platformThreads, platformThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread t = new Thread(runnable, "bench-platform");
+                    t.setDaemon(true);
+                    return t;
+                }));
+
+            if (VirtualThreads.isSupported()) {
+                run("virtual", stub, clients, durationS, warmupS,
+                    () -> VirtualThreads.newThreadPerTaskExecutor("bench-virtual-"));
+            } else {
+                System.out.println("virtual: skipped, needs Java 21");
+            }
+        }
+    }
+
+    private interface ExecutorFactory {
+        ExecutorService create();
+    }
+
+    private static void run(String mode, StubBlockchainServer stub, int clients, long durationS, long warmupS,
+                            ExecutorFactory executors) throws Exception {
+        BlockchainClientProperties properties = new BlockchainClientProperties(
+            new BlockchainClientProperties.Pool(clients, clients, Map.of(), 2000, 30000, 60000, 30000, 30000),
+            new BlockchainClientProperties.Bulkhead(clients, 60000),
+            new BlockchainClientProperties.CircuitBreaker(50, 20, 10, 30000, 3));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RestTemplateConfig config = new RestTemplateConfig();
+        PoolingHttpClientConnectionManager connectionManager = config.blockchainConnectionManager(properties, registry);
+        BlockchainService blockchain = new BlockchainService(config.restTemplate(connectionManager, properties),
+            properties, registry);
+        ReflectionTestUtils.setField(blockchain, "blockchainServiceUrl", stub.url());
+
+        Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        AtomicLong completed = new AtomicLong();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = executors.create();
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupS);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationS);
+
+        // Closed loop: each client resubmits as soon as its previous call returns
+        for (int client = 0; client < clients; client++) {
+            String userId = "bench-" + client;
+            Runnable call = new Runnable() {
+                @Override
+                public void run() {
+                    long submitted = System.nanoTime();
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                PointTransaction transaction = new PointTransaction();
+                                transaction.setId(Long.toHexString(submitted));
+                                transaction.setUserId(userId);
+                                transaction.setAmount(1L);
+                                BlockchainService.BlockchainResponse response = blockchain.trade(transaction);
+                                long now = System.nanoTime();
+                                if (!"SUCCESS".equals(response.status())) {
+                                    failed.incrementAndGet();
+                                } else if (now > warmupEnd && now <= end) {
+                                    latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(now - submitted));
+                                    completed.incrementAndGet();
+                                }
+                            } catch (RuntimeException e) {
+                                failed.incrementAndGet();
+                            }
+                            if (System.nanoTime() < end) {
+                                run();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // run is over
+                    }
+                }
+            };
+            call.run();
+        }
+
+        TimeUnit.NANOSECONDS.sleep(end - System.nanoTime());
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        connectionManager.close();
+
+        System.out.printf("%-15s %8.0f calls/s  p50 %6.1f ms  p99 %7.1f ms  max %7.1f ms  failed %d%n",
+            mode,
+            completed.get() / (double) durationS,
+            latencies.getValueAtPercentile(50) / 1000.0,
+            latencies.getValueAtPercentile(99) / 1000.0,
+            latencies.getMaxValue() / 1000.0,
+            failed.get());
+    }
+
+    private SlowBlockchainBenchmark() {
+    }
+}
@@ -0,0 +1,84 @@
+package com.loyalty.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for backend-go: answers every /blockchain/* call with SUCCESS after a configurable
+ * delay (plus optional jitter and failure rate), so client-side behaviour can be measured without
+ * a chain. Requests are handled on a cached pool so the stub never becomes the bottleneck.
+ */
+public final class StubBlockchainServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread t = new Thread(runnable, "stub-blockchain");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long delayMs;
+    private final long jitterMs;
+    private final double failureRate;
+    private final AtomicLong requests = new AtomicLong();
+
+    public StubBlockchainServer(int port, long delayMs, long jitterMs, double failureRate) throws IOException {
+        this.delayMs = delayMs;
+        this.jitterMs = jitterMs;
+        this.failureRate = failureRate;
+        // The JDK server closes keep-alive connections beyond this limit, which pooled clients
+        // only notice as NoHttpResponseException on their next request
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "100000");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        server.createContext("/blockchain/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+        }
+        try {
+            long jitter = jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0;
+            Thread.sleep(delayMs + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        boolean failed = failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+        String json = failed
+            ? "{\"txHash\":null,\"status\":\"FAILED\",\"error\":\"stub failure\"}"
+            : "{\"txHash\":\"0x" + UUID.randomUUID().toString().replace("-", "") + "\",\"status\":\"SUCCESS\",\"error\":null}";
+        byte[] response = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
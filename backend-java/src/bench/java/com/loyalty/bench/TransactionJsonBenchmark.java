@@ -0,0 +1,51 @@
+package com.loyalty.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loyalty.model.PointTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialisation of {@link PointTransaction} lists with the Spring-configured mapper, at
+ * the default and maximum history page sizes and at export scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionJsonBenchmark {
+
+    @Param({"50", "200", "10000"})
+    public int rows;
+
+    private ObjectMapper objectMapper;
+    private List<PointTransaction> transactions;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        transactions = BalanceFoldBenchmark.history(rows);
+        transactions.forEach(tx -> tx.setDescription("Purchase at partner store #" + tx.getId()));
+    }
+
+    @Benchmark
+    public byte[] serialise() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transactions);
+    }
+}
@@ -0,0 +1,321 @@
+package com.loyalty.repository;
+
+import com.loyalty.dto.HistoryPage;
+import com.loyalty.model.Gift;
+import com.loyalty.model.GiftRedemption;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.model.User;
+import com.loyalty.model.Voucher;
+import com.loyalty.service.BlockchainOutbox;
+import com.loyalty.service.BlockchainOutboxDispatcher;
+import com.loyalty.service.EarnIngestionService;
+import com.loyalty.service.GiftRedemptionService;
+import com.loyalty.service.GiftStockService;
+import com.loyalty.service.HistoryExportService;
+import com.loyalty.service.IdempotencyService;
+import com.loyalty.service.LeaderboardService;
+import com.loyalty.service.MongoIndexReconciler;
+import com.loyalty.service.PointRollupService;
+import com.loyalty.service.PointsService;
+import com.loyalty.service.ReceiptAnchorService;
+import com.loyalty.service.VoucherRedemptionService;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.server.ResponseStatusException;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the application's read and write paths against a real mongod, records every filter the
+ * driver sends, and explains each one against the {@link MongoIndexCatalog} indexes. Fails when any
+ * of them, or any catalogued {@link MongoIndexCatalog.QueryProbe}, is answered with a collection
+ * scan, so the check follows the queries the code actually builds rather than copies of them.
+ * <p>
+ * Filters that are empty on purpose (full loads such as the leaderboard and catalogue snapshots) are
+ * not explained. Run with {@code mvn -Pindex-plans verify}; see the profile in pom.xml. The database
+ * is dropped first, so a mongod passed in with {@code index-plans.mongo-uri} needs one of its own.
+ */
+@SpringBootTest(properties = {
+    "points.indexes.reconcile=false",
+    "blockchain.service.url=http://127.0.0.1:9",
+    "security.rate-limit.enabled=false"
+})
+class IndexPlanIT {
+    private static final String ALICE = "plan-alice";
+    private static final String BOB = "plan-bob";
+    private static final String PARTNER = "plan-partner";
+    private static final Set<String> QUERY_COMMANDS = Set.of("find", "count", "aggregate", "update", "delete", "findAndModify");
+
+    private static final List<SentQuery> sent = new ArrayList<>();
+    private static MongoDBContainer mongo;
+
+    @Autowired private MongoIndexReconciler reconciler;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PointTransactionRepository transactionRepository;
+    @Autowired private TransactionRepository legacyTransactionRepository;
+    @Autowired private VoucherRepository voucherRepository;
+    @Autowired private GiftRepository giftRepository;
+    @Autowired private GiftRedemptionRepository giftRedemptionRepository;
+    @Autowired private PointsService pointsService;
+    @Autowired private HistoryExportService historyExportService;
+    @Autowired private EarnIngestionService earnIngestionService;
+    @Autowired private VoucherRedemptionService voucherRedemptionService;
+    @Autowired private GiftRedemptionService giftRedemptionService;
+    @Autowired private GiftStockService giftStockService;
+    @Autowired private BlockchainOutbox outbox;
+    @Autowired private BlockchainOutboxDispatcher outboxDispatcher;
+    @Autowired private PointRollupService pointRollupService;
+    @Autowired private LeaderboardService leaderboardService;
+    @Autowired private ReceiptAnchorService receiptAnchorService;
+    @Autowired private IdempotencyService idempotencyService;
+
+    record SentQuery(String collection, Document filter, Document sort) {}
+
+    @TestConfiguration
+    static class CaptureQueries {
+        @Bean
+        MongoClientSettingsBuilderCustomizer captureQueries() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (QUERY_COMMANDS.contains(event.getCommandName())) {
+                        record(event.getCommandName(), event.getCommand());
+                    }
+                }
+            });
+        }
+    }
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        String uri = System.getProperty("index-plans.mongo-uri", "");
+        if (uri.isBlank()) {
+            mongo = new MongoDBContainer("mongo:7.0");
+            mongo.start();
+            uri = mongo.getReplicaSetUrl("loyalty_index_plans");
+        }
+        String mongoUri = uri;
+        registry.add("spring.data.mongodb.uri", () -> mongoUri);
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (mongo != null) {
+            mongo.stop();
+        }
+    }
+
+    @Test
+    void everyQueryUsesAnIndex() throws Exception {
+        // A given mongod keeps the last run's data; the database in its URI belongs to this test
+        mongoTemplate.getDb().drop();
+        reconciler.reconcile();
+        assertThat(meterRegistry.get("mongo.indexes.reconcile.failures").counter().count())
+            .as("indexes that could not be created")
+            .isZero();
+
+        exercise();
+
+        Map<String, SentQuery> distinct = new LinkedHashMap<>();
+        synchronized (sent) {
+            sent.forEach(query -> distinct.putIfAbsent(query.collection() + query.filter().toJson() + query.sort(), query));
+        }
+        List<String> scans = new ArrayList<>();
+        for (SentQuery query : distinct.values()) {
+            if (reconciler.scansCollection(query.collection(), query.filter(), query.sort())) {
+                scans.add(query.collection() + " " + query.filter().toJson()
+                    + (query.sort() != null ? " sort " + query.sort().toJson() : ""));
+            }
+        }
+        scans.addAll(reconciler.verifyPlans());
+
+        assertThat(distinct).as("queries recorded").isNotEmpty();
+        assertThat(scans).as("queries answered with a collection scan").isEmpty();
+    }
+
+    private void exercise() throws Exception {
+        userRepository.save(user(ALICE, List.of()));
+        userRepository.save(user(BOB, List.of()));
+        userRepository.save(user(PARTNER, List.of("PARTNER")));
+
+        // Ledger, balances, history and export
+        PointTransaction earned = pointsService.earnPoints(ALICE, 500L, "plan earn");
+        attempt(() -> pointsService.redeemPoints(ALICE, 10L, "plan redeem"));
+        attempt(() -> pointsService.transferPoints(ALICE, BOB, 20L, "plan transfer"));
+        attempt(() -> pointsService.tradeOnBlockchain(ALICE, 5L));
+        attempt(() -> pointsService.payWithPoints(ALICE, 5L));
+        pointsService.getBalance(ALICE);
+        pointsService.verifyBalance(BOB);
+        pointsService.getTransaction(ALICE, earned.getId());
+        HistoryPage page = pointsService.getTransactionHistory(ALICE, null, 1, null, null, null, null);
+        pointsService.getTransactionHistory(ALICE, page.getNextCursor(), 1, PointTransaction.TransactionType.EARN,
+            PointTransaction.TransactionStatus.SUCCESS, new Date(0), new Date());
+        historyExportService.export(ALICE, HistoryExportService.Format.CSV, null, null, null, null, false,
+            OutputStream.nullOutputStream());
+        idempotencyService.execute(ALICE, "plan-key", "plan-fingerprint",
+            () -> ResponseEntity.ok(pointsService.earnPoints(ALICE, 1L, "plan idempotent")));
+        idempotencyService.renewLeases();
+
+        // Partner files
+        String file = "eventId,userId,amount,description\nplan-1," + ALICE + ",5,plan file\nplan-2,nobody,5,unknown\n";
+        earnIngestionService.ingest(PARTNER, "plan-file", HistoryExportService.Format.CSV,
+            new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+        earnIngestionService.getJob(PARTNER, "plan-file");
+
+        // Vouchers
+        Voucher voucher = new Voucher();
+        voucher.setCode("PLAN-5");
+        voucher.setName("plan voucher");
+        voucher.setPointsCost(5L);
+        voucher.setExpiryDate(LocalDateTime.now().plusDays(1));
+        voucher.setActive(true);
+        voucherRepository.save(voucher);
+        voucherRedemptionService.rebuildFilter();
+        attempt(() -> voucherRedemptionService.redeem(ALICE, "PLAN-5"));
+        attempt(() -> voucherRedemptionService.redeem(ALICE, "PLAN-GUESS"));
+        voucherRedemptionService.deactivateExpired();
+
+        // Gifts, on one counter and then sharded
+        Gift gift = new Gift();
+        gift.setName("plan gift");
+        gift.setPointsCost(5L);
+        gift.setStock(20);
+        gift.setActive(true);
+        gift = giftRepository.save(gift);
+        GiftRedemption confirmed = giftRedemptionService.reserve(ALICE, gift.getId(), 1);
+        attempt(() -> giftRedemptionService.confirm(ALICE, confirmed.getId()));
+        GiftRedemption released = giftRedemptionService.reserve(ALICE, gift.getId(), 1);
+        attempt(() -> giftRedemptionService.release(ALICE, released.getId()));
+        giftStockService.enableSharding(gift.getId(), 4);
+        GiftRedemption sharded = giftRedemptionService.reserve(ALICE, gift.getId(), 2);
+        attempt(() -> giftRedemptionService.release(ALICE, sharded.getId()));
+        giftRedemptionService.releaseExpired();
+        giftStockService.shardedTotals();
+
+        // Blockchain outbox and receipt anchoring
+        outbox.claimNext();
+        outboxDispatcher.recoverOrphans();
+        receiptAnchorService.recoverUnanchored();
+        receiptAnchorService.verify(earned.getId());
+
+        // Analytics and leaderboard
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        pointRollupService.flush();
+        pointRollupService.userDaily(ALICE, today.minusDays(7), today, null);
+        pointRollupService.globalDaily(today.minusDays(7), today, PointTransaction.TransactionType.EARN);
+        pointRollupService.backfill(today.minusDays(1), today.minusDays(1));
+        leaderboardService.load();
+        leaderboardService.verify();
+        leaderboardService.rankOf(ALICE);
+
+        // Repository methods not reached above
+        Date now = new Date();
+        transactionRepository.findByUserIdOrderByTimestampDesc(ALICE);
+        transactionRepository.countSuccessfulTransactionsByUserId(ALICE);
+        transactionRepository.findSuccessfulTransactionAmountsByUserId(ALICE);
+        transactionRepository.findTop100ByStatusAndTypeInAndTimestampBefore(PointTransaction.TransactionStatus.PENDING,
+            List.of(PointTransaction.TransactionType.TRADE, PointTransaction.TransactionType.PAY), now);
+        transactionRepository.findTop500ByStatusAndAnchorBatchIdIsNullAndTimestampBetween(
+            PointTransaction.TransactionStatus.SUCCESS, new Date(0), now);
+        transactionRepository.findBalanceTransactionAmountsByUserIdAfter(ALICE, new Date(0));
+        transactionRepository.settlePendingTransaction(earned.getId(), PointTransaction.TransactionStatus.SUCCESS, null);
+        userRepository.findByUsername(ALICE);
+        userRepository.existsByUsername(ALICE);
+        userRepository.existsByEmail(ALICE + "@example.com");
+        legacyTransactionRepository.findByUserId(ALICE, PageRequest.of(0, 10));
+        voucherRepository.findByActiveTrue();
+        voucherRepository.findByCodeAndActiveTrue("PLAN-5");
+        giftRepository.findByActiveTrue();
+        giftRedemptionRepository.findTop100ByStatusAndExpiresAtBefore(GiftRedemption.Status.RESERVED, now);
+    }
+
+    private static User user(String username, List<String> roles) {
+        return User.builder()
+            .username(username)
+            .password("{noop}unused")
+            .email(username + "@example.com")
+            .points(0L)
+            .enabled(true)
+            .roles(roles)
+            .build();
+    }
+
+    // Business rejections are expected on some paths; the queries they sent still count
+    private static void attempt(Runnable step) {
+        try {
+            step.run();
+        } catch (ResponseStatusException | IllegalStateException e) {
+            // keep going
+        }
+    }
+
+    private static void record(String command, BsonDocument body) {
+        String collection = body.getString(command).getValue();
+        List<SentQuery> queries = new ArrayList<>();
+        switch (command) {
+            case "find" -> queries.add(query(collection, body.get("filter"), body.get("sort")));
+            case "count" -> queries.add(query(collection, body.get("query"), null));
+            case "findAndModify" -> queries.add(query(collection, body.get("query"), body.get("sort")));
+            case "update" -> statements(body, "updates").forEach(update -> queries.add(query(collection, update.get("q"), null)));
+            case "delete" -> statements(body, "deletes").forEach(delete -> queries.add(query(collection, delete.get("q"), null)));
+            case "aggregate" -> {
+                BsonArray pipeline = body.getArray("pipeline", new BsonArray());
+                if (!pipeline.isEmpty() && pipeline.get(0).asDocument().containsKey("$match")) {
+                    queries.add(query(collection, pipeline.get(0).asDocument().get("$match"), null));
+                }
+            }
+            default -> { }
+        }
+        synchronized (sent) {
+            queries.stream().filter(query -> !query.filter().isEmpty()).forEach(sent::add);
+        }
+    }
+
+    // Bulk writes travel as a document sequence, not inside the command body
+    private static List<BsonDocument> statements(BsonDocument body, String field) {
+        return body.containsKey(field)
+            ? body.getArray(field).stream().map(BsonValue::asDocument).toList()
+            : List.of();
+    }
+
+    private static SentQuery query(String collection, BsonValue filter, BsonValue sort) {
+        Document filterDocument = filter != null && filter.isDocument() ? Document.parse(filter.asDocument().toJson()) : new Document();
+        Document sortDocument = sort != null && sort.isDocument() && !sort.asDocument().isEmpty()
+            ? Document.parse(sort.asDocument().toJson())
+            : null;
+        return new SentQuery(collection, filterDocument, sortDocument);
+    }
+}
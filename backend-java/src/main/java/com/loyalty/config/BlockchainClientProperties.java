@@ -0,0 +1,44 @@
+package com.loyalty.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Connection pool, bulkhead and circuit breaker settings for calls to backend-go.
+ */
+@ConfigurationProperties(prefix = "blockchain.client")
+public record BlockchainClientProperties(
+    @DefaultValue Pool pool,
+    @DefaultValue Bulkhead bulkhead,
+    @DefaultValue CircuitBreaker circuitBreaker
+) {
+    public record Pool(
+        @DefaultValue("200") int maxTotal,
+        @DefaultValue("50") int maxPerRoute,
+        Map<String, Integer> routes, // per-route override, keyed by scheme://host:port
+        @DefaultValue("2000") long connectTimeoutMs,
+        @DefaultValue("10000") long responseTimeoutMs,
+        @DefaultValue("1000") long connectionRequestTimeoutMs,
+        @DefaultValue("30000") long keepAliveMs,
+        @DefaultValue("30000") long idleEvictMs
+    ) {
+        public Pool {
+            routes = routes != null ? routes : Map.of();
+        }
+    }
+
+    public record Bulkhead(
+        @DefaultValue("50") int maxConcurrentCalls,
+        @DefaultValue("100") long maxWaitMs
+    ) {}
+
+    public record CircuitBreaker(
+        @DefaultValue("50") int failureRateThreshold, // percent of failed calls in the window
+        @DefaultValue("20") int slidingWindowSize,
+        @DefaultValue("10") int minimumCalls,
+        @DefaultValue("30000") long openDurationMs,
+        @DefaultValue("3") int halfOpenCalls
+    ) {}
+}
@@ -0,0 +1,21 @@
+package com.loyalty.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Gift redemption settings. {@code shardedGifts} maps a gift id to the number of stock counters
+ * its stock is spread over (at most 64); gifts not listed keep a single counter.
+ */
+@ConfigurationProperties(prefix = "points.gifts")
+public record GiftRedemptionProperties(
+    @DefaultValue("300000") long reservationTtlMs,
+    @DefaultValue("10") int maxQuantity,
+    Map<String, Integer> shardedGifts
+) {
+    public GiftRedemptionProperties {
+        shardedGifts = shardedGifts != null ? shardedGifts : Map.of();
+    }
+}
@@ -0,0 +1,35 @@
+package com.loyalty.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Per-route request rate limits. The first policy whose path pattern matches a request applies;
+ * requests matching none are not limited.
+ */
+@ConfigurationProperties(prefix = "security.rate-limit")
+public record RateLimitProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("100000") long maxKeys, // buckets kept per node, least recently used evicted first
+    @DefaultValue("600000") long idleExpiryMs,
+    List<Policy> policies
+) {
+    public RateLimitProperties {
+        policies = policies != null ? policies : List.of();
+    }
+
+    public record Policy(
+        String name,
+        List<String> paths, // path patterns, e.g. /api/points/**
+        @DefaultValue("USER") Key key,
+        long capacity, // burst size
+        double refillPerSecond
+    ) {}
+
+    public enum Key {
+        USER,   // authenticated username, falling back to the client IP
+        IP      // client address as seen by the servlet container
+    }
+}
@@ -0,0 +1,132 @@
+package com.loyalty.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loyalty.controller.ReactivePointsHandler;
+import com.loyalty.security.ReactiveJwtAuthenticationFilter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.handler.WebFluxResponseStatusExceptionHandler;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the reactive points API next to the servlet stack: a Reactor Netty listener on
+ * {@code points.reactive.port} serving {@link ReactivePointsHandler}, while Tomcat keeps serving
+ * everything on {@code server.port}. Both share the same database, tokens and balances, so the
+ * same load can be pointed at either port to compare them.
+ * <p>
+ * Only authentication is shared: the listener has none of the servlet stack's
+ * {@link com.loyalty.security.RateLimitFilter} policies, and its earn, redeem and transfer routes
+ * ignore {@code Idempotency-Key}, so a retried request is executed again. Keep the port internal.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "points.reactive.enabled", havingValue = "true")
+public class ReactivePointsServerConfig {
+
+    @Bean
+    public ReactivePointsServer reactivePointsServer(ReactivePointsHandler handler,
+                                                     ReactiveJwtAuthenticationFilter jwtFilter,
+                                                     ObjectMapper objectMapper,
+                                                     MeterRegistry meterRegistry,
+                                                     @Value("${points.reactive.port:8090}") int port,
+                                                     @Value("${points.reactive.event-loop-threads:0}") int eventLoopThreads) {
+        // Same JSON settings as the MVC API
+        HandlerStrategies strategies = HandlerStrategies.builder()
+            .codecs(codecs -> {
+                codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+            })
+            .build();
+
+        HttpHandler httpHandler = WebHttpHandlerBuilder
+            .webHandler(RouterFunctions.toWebHandler(handler.routes(), strategies))
+            .filter(requestTimer(meterRegistry), jwtFilter)
+            .exceptionHandler(new WebFluxResponseStatusExceptionHandler())
+            .build();
+        return new ReactivePointsServer(httpHandler, port, eventLoopThreads, meterRegistry);
+    }
+
+    private static WebFilter requestTimer(MeterRegistry meterRegistry) {
+        return (exchange, chain) -> {
+            long start = System.nanoTime();
+            return chain.filter(exchange).doFinally(signal -> Timer.builder("points.reactive.requests")
+                .tag("method", exchange.getRequest().getMethod().name())
+                .tag("status", String.valueOf(exchange.getResponse().getStatusCode() != null
+                    ? exchange.getResponse().getStatusCode().value()
+                    : 200))
+                .description("Requests served by the reactive points API")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        };
+    }
+
+    public static class ReactivePointsServer implements SmartLifecycle {
+        private final HttpHandler httpHandler;
+        private final int port;
+        private final LoopResources loops;
+        private final AtomicInteger connections = new AtomicInteger();
+        private volatile DisposableServer server;
+
+        ReactivePointsServer(HttpHandler httpHandler, int port, int eventLoopThreads, MeterRegistry meterRegistry) {
+            this.httpHandler = httpHandler;
+            this.port = port;
+            // 0 keeps Reactor's default of one event loop per core
+            this.loops = eventLoopThreads > 0
+                ? LoopResources.create("points-reactive", eventLoopThreads, true)
+                : LoopResources.create("points-reactive");
+            Gauge.builder("points.reactive.connections", connections, AtomicInteger::get)
+                .description("Open connections on the reactive points API")
+                .register(meterRegistry);
+        }
+
+        @Override
+        public void start() {
+            server = HttpServer.create()
+                .port(port)
+                .runOn(loops)
+                .doOnConnection(connection -> {
+                    connections.incrementAndGet();
+                    connection.onDispose(connections::decrementAndGet);
+                })
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+            log.info("Reactive points API started on port {}", server.port());
+        }
+
+        @Override
+        public void stop() {
+            DisposableServer current = server;
+            server = null;
+            if (current != null) {
+                current.disposeNow();
+            }
+            loops.disposeLater().block();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return server != null;
+        }
+    }
+}
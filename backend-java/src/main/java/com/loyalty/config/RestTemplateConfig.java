@@ -1,14 +1,79 @@
 package com.loyalty.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URISyntaxException;
+import java.util.function.ToDoubleFunction;
+
 @Configuration
+@EnableConfigurationProperties(BlockchainClientProperties.class)
 public class RestTemplateConfig {
     
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager blockchainConnectionManager(BlockchainClientProperties properties,
+                                                                          MeterRegistry meterRegistry) throws URISyntaxException {
+        BlockchainClientProperties.Pool pool = properties.pool();
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(pool.maxTotal())
+            .setMaxConnPerRoute(pool.maxPerRoute())
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(pool.connectTimeoutMs()))
+                .setSocketTimeout(Timeout.ofMilliseconds(pool.responseTimeoutMs()))
+                .build())
+            .build();
+        for (var route : pool.routes().entrySet()) {
+            connectionManager.setMaxPerRoute(new HttpRoute(HttpHost.create(route.getKey())), route.getValue());
+        }
+
+        registerPoolGauge(meterRegistry, connectionManager, "leased", PoolStats::getLeased);
+        registerPoolGauge(meterRegistry, connectionManager, "available", PoolStats::getAvailable);
+        registerPoolGauge(meterRegistry, connectionManager, "pending", PoolStats::getPending);
+        registerPoolGauge(meterRegistry, connectionManager, "max", PoolStats::getMax);
+        return connectionManager;
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(PoolingHttpClientConnectionManager blockchainConnectionManager,
+                                     BlockchainClientProperties properties) {
+        BlockchainClientProperties.Pool pool = properties.pool();
+        CloseableHttpClient httpClient = HttpClients.custom()
+            .setConnectionManager(blockchainConnectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(pool.connectionRequestTimeoutMs()))
+                .setResponseTimeout(Timeout.ofMilliseconds(pool.responseTimeoutMs()))
+                .build())
+            .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(pool.keepAliveMs()))
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(pool.idleEvictMs()))
+            .build();
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    private static void registerPoolGauge(MeterRegistry meterRegistry,
+                                          PoolingHttpClientConnectionManager connectionManager,
+                                          String state,
+                                          ToDoubleFunction<PoolStats> value) {
+        Gauge.builder("blockchain.client.pool.connections", connectionManager,
+                cm -> value.applyAsDouble(cm.getTotalStats()))
+            .tag("state", state)
+            .description("Blockchain HTTP connection pool; pending counts requests waiting for a connection")
+            .register(meterRegistry);
     }
-}
\ No newline at end of file
+}
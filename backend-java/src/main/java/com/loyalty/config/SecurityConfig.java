@@ -1,30 +1,52 @@
 package com.loyalty.config;
 
+import com.loyalty.model.User;
 import com.loyalty.repository.UserRepository;
+import com.loyalty.security.AdaptiveBCryptPasswordEncoder;
 import com.loyalty.security.JwtAuthenticationFilter;
+import com.loyalty.security.RateLimitFilter;
+import com.loyalty.security.UserPrincipalCache;
+import com.loyalty.service.IdempotencyService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
 @Configuration
 @EnableWebSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${management.server.port:${server.port:8080}}")
+    private int managementPort;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -33,14 +55,34 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Async dispatches finish streamed responses whose request was already authorised
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/**", "/error", "/health").permitAll()
+                .requestMatchers(actuatorOnManagementPort()).permitAll()
+                // System-wide figures and ledger rescans are for operators only
+                .requestMatchers("/api/analytics/points/daily/global", "/api/analytics/rollups/**").hasRole("OPERATOR")
+                // Partner files credit arbitrary users; refused here, before the upload body is read
+                .requestMatchers("/api/ingestion/**").hasRole("PARTNER")
                 .anyRequest().authenticated()
             )
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            // Runs once the JWT has been resolved so it can key buckets by user
+            .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
 
+    /**
+     * Actuator requests that arrived on the separate management port, which is only reachable inside
+     * the deployment network. When actuator shares the API port it needs a token like any other path.
+     */
+    private RequestMatcher actuatorOnManagementPort() {
+        RequestMatcher actuator = new AntPathRequestMatcher("/actuator/**");
+        return request -> managementPort != serverPort
+            && request.getLocalPort() == managementPort
+            && actuator.matches(request);
+    }
+
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
         return config.getAuthenticationManager();
@@ -53,8 +95,29 @@ public class SecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:10}") int strength,
+                                           @Value("${security.bcrypt.target-ms:250}") long targetMs,
+                                           @Value("${security.bcrypt.min-strength:10}") int minStrength,
+                                           @Value("${security.bcrypt.max-strength:14}") int maxStrength) {
+        // strength 0 calibrates the cost to the target hashing latency on this machine
+        return strength > 0
+            ? new AdaptiveBCryptPasswordEncoder(strength)
+            : AdaptiveBCryptPasswordEncoder.calibrated(targetMs, minStrength, maxStrength);
+    }
+
+    /**
+     * Stores the rehashed password when a login finds a hash with a different BCrypt cost.
+     */
+    @Bean
+    public UserDetailsPasswordService userDetailsPasswordService(MongoTemplate mongoTemplate,
+                                                                 UserPrincipalCache userPrincipalCache) {
+        return (user, newPassword) -> {
+            mongoTemplate.updateFirst(query(where("username").is(user.getUsername())),
+                Update.update("password", newPassword), User.class);
+            userPrincipalCache.invalidate(user.getUsername());
+            ((User) user).setPassword(newPassword);
+            return user;
+        };
     }
 
     @Bean
@@ -68,6 +131,9 @@ public class SecurityConfig {
         configuration.addAllowedMethod("OPTIONS");
         configuration.addAllowedHeader("Authorization");
         configuration.addAllowedHeader("Content-Type");
+        configuration.addAllowedHeader(IdempotencyService.HEADER);
+        configuration.addExposedHeader(IdempotencyService.REPLAYED_HEADER);
+        configuration.addExposedHeader(HttpHeaders.RETRY_AFTER);
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
         
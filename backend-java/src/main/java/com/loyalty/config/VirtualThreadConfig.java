@@ -0,0 +1,62 @@
+package com.loyalty.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Virtual-thread execution mode ({@code points.threads.virtual=true}, needs a Java 21 runtime).
+ * <p>
+ * Tomcat runs each request on its own virtual thread, as do async MVC responses (history exports)
+ * and the blockchain outbox dispatcher, so blocking on Mongo or backend-go no longer holds a
+ * platform thread. Concurrency towards backend-go stays bounded by the HTTP connection pool and
+ * the bulkhead. Credential hashing keeps its small platform pool on purpose: it is CPU-bound.
+ * On an older runtime the mode logs a warning and the platform pools stay in place.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "points.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (VirtualThreads.isSupported()) {
+                protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-vt-"));
+                log.info("Tomcat is handling requests on virtual threads");
+            } else {
+                log.warn("points.threads.virtual is set but Java {} has no virtual threads, keeping the Tomcat pool",
+                    Runtime.version().feature());
+            }
+        };
+    }
+
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                if (VirtualThreads.isSupported()) {
+                    configurer.setTaskExecutor(new TaskExecutorAdapter(VirtualThreads.newThreadPerTaskExecutor("mvc-async-vt-")));
+                }
+            }
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "points.threads.pinning-monitor", havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${points.threads.pinned-threshold-ms:20}") long thresholdMs,
+            MeterRegistry meterRegistry) {
+        return new VirtualThreadPinningMonitor(Duration.ofMillis(thresholdMs), meterRegistry);
+    }
+}
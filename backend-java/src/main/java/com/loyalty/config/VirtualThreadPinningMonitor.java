@@ -0,0 +1,62 @@
+package com.loyalty.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the JFR {@code jdk.VirtualThreadPinned} event in-process: a virtual thread that blocks
+ * inside a {@code synchronized} block or native frame holds on to its carrier thread. Each pin
+ * longer than the threshold is counted in {@code jvm.threads.virtual.pinned}; the stack is logged
+ * the 1st, 2nd, 4th, 8th... time the same site pins, so a hot site cannot flood the log.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final RecordingStream stream;
+    private final Counter pinned;
+    private final Map<String, AtomicLong> sites = new ConcurrentHashMap<>();
+
+    public VirtualThreadPinningMonitor(Duration threshold, MeterRegistry meterRegistry) {
+        this.pinned = Counter.builder("jvm.threads.virtual.pinned")
+            .description("Virtual threads that blocked while pinned to their carrier")
+            .register(meterRegistry);
+        this.stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Watching for virtual thread pinning longer than {} ms", threshold.toMillis());
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+        String site = frames.stream()
+            .limit(LOGGED_FRAMES)
+            .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber())
+            .collect(Collectors.joining("\n\tat "));
+        long count = sites.computeIfAbsent(site, s -> new AtomicLong()).incrementAndGet();
+        if (Long.bitCount(count) == 1) {
+            log.warn("Virtual thread pinned for {} ms ({} times at this site)\n\tat {}",
+                event.getDuration().toMillis(), count, site);
+        }
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
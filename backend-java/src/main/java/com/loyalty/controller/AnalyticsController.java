@@ -0,0 +1,54 @@
+package com.loyalty.controller;
+
+import com.loyalty.model.PointRollup;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.service.PointRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+    private final PointRollupService pointRollupService;
+
+    /**
+     * Points credited and debited per day and transaction type for the caller, both ends inclusive.
+     */
+    @GetMapping("/points/daily")
+    public ResponseEntity<List<PointRollup>> getDailyPoints(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) PointTransaction.TransactionType type) {
+        return ResponseEntity.ok(pointRollupService.userDaily(userDetails.getUsername(), from, to, type));
+    }
+
+    /**
+     * Totals across all users per day and transaction type. Operators only.
+     */
+    @GetMapping("/points/daily/global")
+    public ResponseEntity<List<PointRollup>> getGlobalDailyPoints(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) PointTransaction.TransactionType type) {
+        return ResponseEntity.ok(pointRollupService.globalDaily(from, to, type));
+    }
+
+    /**
+     * Rebuilds the rollups of closed days from the ledger, e.g. after first deployment. Operators only.
+     */
+    @PostMapping("/rollups/backfill")
+    public ResponseEntity<PointRollupService.BackfillReport> backfillRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(pointRollupService.backfill(from, to));
+    }
+}
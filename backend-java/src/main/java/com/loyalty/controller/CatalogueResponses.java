@@ -0,0 +1,47 @@
+package com.loyalty.controller;
+
+import com.loyalty.service.CatalogueSnapshotService.CatalogueSnapshot;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Turns a catalogue snapshot into a response: 304 when the client already holds the current
+ * version, otherwise the pre-serialised body, gzipped when the client accepts it.
+ */
+final class CatalogueResponses {
+    private CatalogueResponses() {
+    }
+
+    static ResponseEntity<byte[]> of(CatalogueSnapshot snapshot, String ifNoneMatch, String acceptEncoding) {
+        if (snapshot == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Catalogue is loading, retry shortly");
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        String etag = gzip ? snapshot.gzipEtag() : snapshot.etag();
+
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*")
+                || ifNoneMatch.contains(snapshot.etag()) || ifNoneMatch.contains(snapshot.gzipEtag()))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .lastModified(snapshot.builtAt())
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return response.body(snapshot.gzippedJson());
+        }
+        return response.body(snapshot.json());
+    }
+}
@@ -1,23 +1,57 @@
 package com.loyalty.controller;
 
-import com.loyalty.model.Gift;
-import com.loyalty.repository.GiftRepository;
+import com.loyalty.dto.GiftRedemptionRequest;
+import com.loyalty.model.GiftRedemption;
+import com.loyalty.service.CatalogueSnapshotService;
+import com.loyalty.service.GiftRedemptionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
-
-import java.util.List;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api/gifts")
 @RequiredArgsConstructor
 public class GiftController {
-    private final GiftRepository giftRepository;
+    private final CatalogueSnapshotService catalogueSnapshotService;
+    private final GiftRedemptionService giftRedemptionService;
 
+    /**
+     * Served from the in-memory snapshot; clients revalidate with If-None-Match and get a 304.
+     */
     @GetMapping
-    public ResponseEntity<List<Gift>> getGifts() {
-        return ResponseEntity.ok(giftRepository.findByActiveTrue());
+    public ResponseEntity<byte[]> getGifts(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return CatalogueResponses.of(catalogueSnapshotService.gifts(), ifNoneMatch, acceptEncoding);
+    }
+
+    /**
+     * Reserves stock and holds the points; the redemption must be confirmed before it expires.
+     */
+    @PostMapping("/{giftId}/redemptions")
+    public ResponseEntity<GiftRedemption> reserveGift(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String giftId,
+            @RequestBody(required = false) GiftRedemptionRequest request) {
+        int quantity = request != null && request.getQuantity() != null ? request.getQuantity() : 1;
+        GiftRedemption redemption = giftRedemptionService.reserve(userDetails.getUsername(), giftId, quantity);
+        return ResponseEntity.ok(redemption);
+    }
+
+    @PostMapping("/redemptions/{redemptionId}/confirm")
+    public ResponseEntity<GiftRedemption> confirmRedemption(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String redemptionId) {
+        return ResponseEntity.ok(giftRedemptionService.confirm(userDetails.getUsername(), redemptionId));
+    }
+
+    @PostMapping("/redemptions/{redemptionId}/release")
+    public ResponseEntity<GiftRedemption> releaseRedemption(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String redemptionId) {
+        return ResponseEntity.ok(giftRedemptionService.release(userDetails.getUsername(), redemptionId));
     }
-}
\ No newline at end of file
+}
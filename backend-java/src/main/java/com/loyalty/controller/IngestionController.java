@@ -0,0 +1,46 @@
+package com.loyalty.controller;
+
+import com.loyalty.dto.IngestionReport;
+import com.loyalty.model.IngestionJob;
+import com.loyalty.service.EarnIngestionService;
+import com.loyalty.service.HistoryExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/ingestion")
+@RequiredArgsConstructor
+public class IngestionController {
+    private final EarnIngestionService earnIngestionService;
+
+    /**
+     * Streams a partner earn file (text/csv or application/x-ndjson). Sending the same fileId
+     * again resumes a partially processed file; rows already ingested come back as duplicates.
+     * Only PARTNER accounts get here (see SecurityConfig); the account's username is the partner id.
+     */
+    @PostMapping(value = "/earn", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<IngestionReport> ingestEarnFile(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam String fileId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) throws IOException {
+        HistoryExportService.Format format = contentType.startsWith("text/csv")
+            ? HistoryExportService.Format.CSV
+            : HistoryExportService.Format.NDJSON;
+        return ResponseEntity.ok(earnIngestionService.ingest(userDetails.getUsername(), fileId, format, body));
+    }
+
+    @GetMapping("/earn/{fileId}")
+    public ResponseEntity<IngestionJob> getIngestionJob(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String fileId) {
+        return ResponseEntity.ok(earnIngestionService.getJob(userDetails.getUsername(), fileId));
+    }
+}
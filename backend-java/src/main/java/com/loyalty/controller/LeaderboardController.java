@@ -0,0 +1,29 @@
+package com.loyalty.controller;
+
+import com.loyalty.service.LeaderboardService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/leaderboard")
+@RequiredArgsConstructor
+public class LeaderboardController {
+    private final LeaderboardService leaderboardService;
+
+    @GetMapping
+    public ResponseEntity<List<LeaderboardService.Entry>> getTop(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(leaderboardService.top(limit));
+    }
+
+    @GetMapping("/me")
+    public ResponseEntity<LeaderboardService.Entry> getMyRank(@AuthenticationPrincipal UserDetails userDetails) {
+        return leaderboardService.rankOf(userDetails.getUsername())
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,20 +1,28 @@
 package com.loyalty.controller;
 
 import com.loyalty.model.PointTransaction;
+import com.loyalty.service.HistoryExportService;
+import com.loyalty.service.IdempotencyService;
 import com.loyalty.service.PointsService;
+import com.loyalty.dto.HistoryPage;
 import com.loyalty.dto.PointsRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import lombok.RequiredArgsConstructor;
-import java.util.List;
+import java.util.Date;
 
 @RestController
 @RequestMapping("/api/points")
 @RequiredArgsConstructor
 public class PointsController {
     private final PointsService pointsService;
+    private final HistoryExportService historyExportService;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping("/balance")
     public ResponseEntity<Long> getBalance(@AuthenticationPrincipal UserDetails userDetails) {
@@ -22,70 +30,143 @@ public class PointsController {
         return ResponseEntity.ok(balance);
     }
 
+    @PostMapping("/balance/verify")
+    public ResponseEntity<Long> verifyBalance(@AuthenticationPrincipal UserDetails userDetails) {
+        Long balance = pointsService.verifyBalance(userDetails.getUsername());
+        return ResponseEntity.ok(balance);
+    }
+
     @PostMapping("/earn")
     public ResponseEntity<PointTransaction> earnPoints(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody PointsRequest request) {
-        PointTransaction transaction = pointsService.earnPoints(
-            userDetails.getUsername(),
-            request.getAmount(),
-            request.getDescription()
-        );
-        return ResponseEntity.ok(transaction);
+        return idempotencyService.execute(userDetails.getUsername(), idempotencyKey, fingerprint("earn", request), () -> {
+            PointTransaction transaction = pointsService.earnPoints(
+                userDetails.getUsername(),
+                request.getAmount(),
+                request.getDescription()
+            );
+            return ResponseEntity.ok(transaction);
+        });
     }
 
     @PostMapping("/redeem")
     public ResponseEntity<PointTransaction> redeemPoints(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody PointsRequest request) {
-        PointTransaction transaction = pointsService.redeemPoints(
-            userDetails.getUsername(),
-            request.getAmount(),
-            request.getDescription()
-        );
-        return ResponseEntity.ok(transaction);
+        return idempotencyService.execute(userDetails.getUsername(), idempotencyKey, fingerprint("redeem", request), () -> {
+            PointTransaction transaction = pointsService.redeemPoints(
+                userDetails.getUsername(),
+                request.getAmount(),
+                request.getDescription()
+            );
+            return ResponseEntity.ok(transaction);
+        });
     }
 
     @PostMapping("/transfer/{toUserId}")
     public ResponseEntity<PointTransaction> transferPoints(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @PathVariable String toUserId,
             @RequestBody PointsRequest request) {
-        PointTransaction transaction = pointsService.transferPoints(
-            userDetails.getUsername(),
-            toUserId,
-            request.getAmount(),
-            request.getDescription()
-        );
-        return ResponseEntity.ok(transaction);
+        return idempotencyService.execute(userDetails.getUsername(), idempotencyKey,
+                fingerprint("transfer/" + toUserId, request), () -> {
+            PointTransaction transaction = pointsService.transferPoints(
+                userDetails.getUsername(),
+                toUserId,
+                request.getAmount(),
+                request.getDescription()
+            );
+            return ResponseEntity.ok(transaction);
+        });
     }
 
     @PostMapping("/trade")
     public ResponseEntity<PointTransaction> tradeOnBlockchain(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody PointsRequest request) {
-        PointTransaction transaction = pointsService.tradeOnBlockchain(
-            userDetails.getUsername(),
-            request.getAmount()
-        );
-        return ResponseEntity.ok(transaction);
+        return idempotencyService.execute(userDetails.getUsername(), idempotencyKey, fingerprint("trade", request), () -> {
+            PointTransaction transaction = pointsService.tradeOnBlockchain(
+                userDetails.getUsername(),
+                request.getAmount()
+            );
+            return ResponseEntity.accepted().body(transaction);
+        });
     }
 
     @PostMapping("/pay")
     public ResponseEntity<PointTransaction> payWithPoints(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody PointsRequest request) {
-        PointTransaction transaction = pointsService.payWithPoints(
-            userDetails.getUsername(),
-            request.getAmount()
-        );
-        return ResponseEntity.ok(transaction);
+        return idempotencyService.execute(userDetails.getUsername(), idempotencyKey, fingerprint("pay", request), () -> {
+            PointTransaction transaction = pointsService.payWithPoints(
+                userDetails.getUsername(),
+                request.getAmount()
+            );
+            return ResponseEntity.accepted().body(transaction);
+        });
+    }
+
+    @GetMapping("/transactions/{transactionId}")
+    public ResponseEntity<PointTransaction> getTransaction(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String transactionId) {
+        return pointsService.getTransaction(userDetails.getUsername(), transactionId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/history")
-    public ResponseEntity<List<PointTransaction>> getTransactionHistory(
-            @AuthenticationPrincipal UserDetails userDetails) {
-        List<PointTransaction> history = pointsService.getTransactionHistory(userDetails.getUsername());
+    public ResponseEntity<HistoryPage> getTransactionHistory(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) PointTransaction.TransactionType type,
+            @RequestParam(required = false) PointTransaction.TransactionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        HistoryPage history = pointsService.getTransactionHistory(
+            userDetails.getUsername(), cursor, limit, type, status, from, to);
         return ResponseEntity.ok(history);
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams the full statement as CSV or NDJSON, gzipped when the client accepts it.
+     */
+    @GetMapping("/history/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactionHistory(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(defaultValue = "CSV") HistoryExportService.Format format,
+            @RequestParam(required = false) PointTransaction.TransactionType type,
+            @RequestParam(required = false) PointTransaction.TransactionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        String userId = userDetails.getUsername();
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        StreamingResponseBody body = out ->
+            historyExportService.export(userId, format, type, status, from, to, gzip, out);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_TYPE, format.getContentType() + ";charset=UTF-8")
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"points-history." + format.getExtension() + "\"")
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * What an Idempotency-Key is bound to: the operation and the fields that change its effect.
+     */
+    private static String fingerprint(String operation, PointsRequest request) {
+        return operation + '|' + request.getAmount() + '|' + request.getDescription();
+    }
+}
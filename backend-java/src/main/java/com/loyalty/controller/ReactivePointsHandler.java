@@ -0,0 +1,109 @@
+package com.loyalty.controller;
+
+import com.loyalty.dto.PointsRequest;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.service.ReactivePointsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Reactive counterpart of the balance, history, earn, redeem and transfer endpoints of
+ * {@link PointsController}, served on the {@code points.reactive.port} listener. Paths and bodies
+ * match the MVC API; history is streamed as NDJSON instead of being paged.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "points.reactive.enabled", havingValue = "true")
+public class ReactivePointsHandler {
+    private final ReactivePointsService pointsService;
+
+    public RouterFunction<ServerResponse> routes() {
+        return route(GET("/api/points/balance"), this::getBalance)
+            .andRoute(GET("/api/points/history"), this::streamHistory)
+            .andRoute(POST("/api/points/earn"), this::earnPoints)
+            .andRoute(POST("/api/points/redeem"), this::redeemPoints)
+            .andRoute(POST("/api/points/transfer/{toUserId}"), this::transferPoints);
+    }
+
+    public Mono<ServerResponse> getBalance(ServerRequest request) {
+        return userId(request)
+            .flatMap(pointsService::getBalance)
+            .flatMap(balance -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(balance));
+    }
+
+    public Mono<ServerResponse> earnPoints(ServerRequest request) {
+        return withBody(request, (userId, body) ->
+            pointsService.earnPoints(userId, body.getAmount(), body.getDescription()));
+    }
+
+    public Mono<ServerResponse> redeemPoints(ServerRequest request) {
+        return withBody(request, (userId, body) ->
+            pointsService.redeemPoints(userId, body.getAmount(), body.getDescription()));
+    }
+
+    public Mono<ServerResponse> transferPoints(ServerRequest request) {
+        String toUserId = request.pathVariable("toUserId");
+        return withBody(request, (userId, body) ->
+            pointsService.transferPoints(userId, toUserId, body.getAmount(), body.getDescription()));
+    }
+
+    /**
+     * Streams the full (or {@code limit}-capped) history, one JSON object per line, newest first.
+     */
+    public Mono<ServerResponse> streamHistory(ServerRequest request) {
+        PointTransaction.TransactionType type = param(request, "type", PointTransaction.TransactionType::valueOf);
+        PointTransaction.TransactionStatus status = param(request, "status", PointTransaction.TransactionStatus::valueOf);
+        Date from = param(request, "from", value -> Date.from(Instant.parse(value)));
+        Date to = param(request, "to", value -> Date.from(Instant.parse(value)));
+        Integer limit = param(request, "limit", Integer::valueOf);
+
+        return userId(request).flatMap(userId -> ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(pointsService.streamHistory(userId, type, status, from, to, limit), PointTransaction.class));
+    }
+
+    private Mono<ServerResponse> withBody(ServerRequest request,
+                                          BiFunction<String, PointsRequest, Mono<PointTransaction>> operation) {
+        return userId(request)
+            .zipWith(request.bodyToMono(PointsRequest.class))
+            .flatMap(args -> operation.apply(args.getT1(), args.getT2()))
+            .flatMap(transaction -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(transaction));
+    }
+
+    private static Mono<String> userId(ServerRequest request) {
+        return request.principal()
+            .map(Principal::getName)
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED)));
+    }
+
+    private static <T> T param(ServerRequest request, String name, Function<String, T> parser) {
+        String value = request.queryParam(name).orElse(null);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid " + name + ": " + value);
+        }
+    }
+}
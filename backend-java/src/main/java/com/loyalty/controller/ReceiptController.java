@@ -0,0 +1,31 @@
+package com.loyalty.controller;
+
+import com.loyalty.service.PointsService;
+import com.loyalty.service.ReceiptAnchorService;
+import com.loyalty.service.ReceiptAnchorService.ReceiptVerification;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/receipts")
+@RequiredArgsConstructor
+public class ReceiptController {
+    private final PointsService pointsService;
+    private final ReceiptAnchorService receiptAnchorService;
+
+    @GetMapping("/{transactionId}/verify")
+    public ResponseEntity<ReceiptVerification> verifyReceipt(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable String transactionId) {
+        return pointsService.getTransaction(userDetails.getUsername(), transactionId)
+            .flatMap(tx -> receiptAnchorService.verify(tx.getId()))
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,25 +1,40 @@
 package com.loyalty.controller;
 
+import com.loyalty.dto.VoucherRedemptionRequest;
+import com.loyalty.model.PointTransaction;
 import com.loyalty.model.User;
-import com.loyalty.model.Voucher;
-import com.loyalty.repository.VoucherRepository;
+import com.loyalty.service.CatalogueSnapshotService;
+import com.loyalty.service.VoucherRedemptionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/vouchers")
 @RequiredArgsConstructor
 public class VoucherController {
-    private final VoucherRepository voucherRepository;
+    private final CatalogueSnapshotService catalogueSnapshotService;
+    private final VoucherRedemptionService voucherRedemptionService;
 
     @GetMapping
-    public ResponseEntity<List<Voucher>> getVouchers(@AuthenticationPrincipal User user) {
-        return ResponseEntity.ok(voucherRepository.findByActiveTrue());
+    public ResponseEntity<byte[]> getVouchers(
+            @AuthenticationPrincipal User user,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return CatalogueResponses.of(catalogueSnapshotService.vouchers(), ifNoneMatch, acceptEncoding);
+    }
+
+    @PostMapping("/redeem")
+    public ResponseEntity<PointTransaction> redeemVoucher(
+            @AuthenticationPrincipal User user,
+            @RequestBody VoucherRedemptionRequest request) {
+        return ResponseEntity.ok(voucherRedemptionService.redeem(user.getUsername(), request.getCode()));
     }
-}
\ No newline at end of file
+}
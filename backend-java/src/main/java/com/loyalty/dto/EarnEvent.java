@@ -0,0 +1,19 @@
+package com.loyalty.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row of a partner earn file. {@code eventId} is the partner's own id for the event and makes
+ * resubmitting a file safe.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EarnEvent {
+    private String eventId;
+    private String userId;
+    private Long amount;
+    private String description;
+}
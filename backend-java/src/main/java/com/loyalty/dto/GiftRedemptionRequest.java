@@ -0,0 +1,10 @@
+package com.loyalty.dto;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+@Data
+public class GiftRedemptionRequest {
+    @Min(1)
+    private Integer quantity = 1;
+}
@@ -0,0 +1,14 @@
+package com.loyalty.dto;
+
+import com.loyalty.model.PointTransaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class HistoryPage {
+    private List<PointTransaction> transactions;
+    private String nextCursor; // null on the last page
+}
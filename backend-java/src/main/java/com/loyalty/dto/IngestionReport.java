@@ -0,0 +1,29 @@
+package com.loyalty.dto;
+
+import com.loyalty.model.IngestionJob;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class IngestionReport {
+    private IngestionJob job;
+    private List<RowResult> rows; // only rows that were not inserted, see truncated
+    private boolean truncated;
+
+    @Data
+    @AllArgsConstructor
+    public static class RowResult {
+        private long line;
+        private String eventId;
+        private Outcome outcome;
+        private String error;
+    }
+
+    public enum Outcome {
+        DUPLICATE,  // Already ingested by an earlier submission or earlier in this file
+        REJECTED    // Failed validation or could not be written
+    }
+}
@@ -0,0 +1,10 @@
+package com.loyalty.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class VoucherRedemptionRequest {
+    @NotBlank
+    private String code;
+}
@@ -0,0 +1,34 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * One Merkle root anchored on the blockchain for a window of transaction receipts.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "anchor_batches")
+public class AnchorBatch {
+    @Id
+    private String id;
+    private String merkleRoot;
+    private Integer size;
+    private String blockchainTx;
+    private Status status;
+    private Date createdAt;
+
+    public enum Status {
+        PENDING,    // Root is being anchored (only written by earlier versions)
+        ANCHORED,   // Root is on the blockchain and the proofs are stored
+        FAILED      // Anchoring failed (only written by earlier versions; failed batches are no longer stored)
+    }
+}
@@ -1,5 +1,6 @@
 package com.loyalty.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -13,6 +14,10 @@ public class Gift {
     private String description;
     private Long pointsCost;
     private Integer stock;
+    @JsonIgnore
+    private Integer stockShards; // stock is spread over this many GiftStockShard counters, null for one counter
+    @JsonIgnore
+    private Integer stockShardSeed; // units still to be written to the shard counters, set while sharding
     private String imageUrl;
     private boolean active;
 }
@@ -0,0 +1,39 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * A claim on gift stock. Its id is also the id of the PENDING REDEEM {@link PointTransaction}
+ * that holds the points, so either side can always be found from the other.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "gift_redemptions")
+public class GiftRedemption {
+    @Id
+    private String id;
+    private String userId;
+    private String giftId;
+    private Integer quantity;
+    private Long pointsCost;
+    private Status status;
+    private Integer stockShard; // counter the stock was taken from, -1 for the gift itself, null if none yet
+    private Date expiresAt;
+    private Date createdAt;
+    private Date updatedAt;
+
+    public enum Status {
+        RESERVED,   // Stock and points held until expiresAt
+        CONFIRMED,  // Redeemed
+        RELEASED    // Cancelled or expired, stock and points returned
+    }
+}
@@ -0,0 +1,24 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * One of the sub-counters a hot gift's stock is spread over, keyed by {@code giftId:shard}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "gift_stock_shards")
+public class GiftStockShard {
+    @Id
+    private String id;
+    private String giftId;
+    private Integer shard;
+    private Integer stock;
+}
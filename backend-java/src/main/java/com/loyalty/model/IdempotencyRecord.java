@@ -0,0 +1,37 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Outcome of a mutating points request sent with an {@code Idempotency-Key}, keyed by user and key.
+ * Removed by the TTL index on {@code expiresAt}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    @Id
+    private String id;
+    private String fingerprint;
+    private Status status;
+    private Integer responseStatus;
+    private PointTransaction response;
+    private String owner; // node running the request, which keeps renewing lockedUntil
+    private Date lockedUntil;
+    private Date createdAt;
+    private Date expiresAt;
+
+    public enum Status {
+        IN_PROGRESS,    // Claimed by a node until lockedUntil
+        COMPLETED       // Response stored for replay
+    }
+}
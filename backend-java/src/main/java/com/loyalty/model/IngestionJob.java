@@ -0,0 +1,40 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Outcome of the latest submission of a partner earn file, keyed by {@code partnerId:fileId}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "ingestion_jobs")
+public class IngestionJob {
+    @Id
+    private String id;
+    private String partnerId;
+    private String fileId;
+    private Status status;
+    private Integer submissions;
+    private Long rows;
+    private Long inserted;
+    private Long duplicates;
+    private Long rejected;
+    private String error;
+    private Date startedAt;
+    private Date finishedAt;
+
+    public enum Status {
+        RUNNING,    // Upload is being processed
+        COMPLETED,  // Every row was inserted, skipped as a duplicate or rejected
+        FAILED      // Processing stopped early; resubmit the file to finish it
+    }
+}
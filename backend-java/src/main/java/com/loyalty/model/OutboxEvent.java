@@ -0,0 +1,36 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Pending blockchain call for a TRADE/PAY {@link PointTransaction}, keyed by the transaction id.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "outbox_events")
+public class OutboxEvent {
+    @Id
+    private String transactionId;
+    private PointTransaction.TransactionType type;
+    private Status status;
+    private Integer attempts;
+    private Date nextAttemptAt;
+    private Date lockedUntil;
+    private String lastError;
+    private Date createdAt;
+
+    public enum Status {
+        PENDING,    // Waiting for the dispatcher
+        IN_FLIGHT,  // Claimed by a dispatcher until lockedUntil
+        FAILED      // Gave up after the maximum number of attempts
+    }
+}
@@ -0,0 +1,52 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Materialized balance checkpoint for one user.
+ * <p>
+ * {@code balance} is the fold of every SUCCESS row up to the {@code lastTimestamp} watermark plus
+ * every row listed in {@code applied}: rows after the watermark that were already folded in, debits
+ * reserved before their row is written, and holds that are still pending. A row is only folded in
+ * while it is neither covered by the watermark nor listed, so applying it twice is a no-op, and a
+ * written row that was never applied shows up as a tail row missing from the list.
+ * <p>
+ * {@code version} changes with every update, so a rebuild can replace the checkpoint only if nothing
+ * touched it while the ledger was being folded.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "point_balances")
+public class PointBalance {
+    @Id
+    private String userId;
+    private Long balance;
+    private Long appliedCount;
+    private Long version;
+    private List<AppliedRow> applied;
+    private String lastTransactionId;
+    private Date lastTimestamp;
+    private Date updatedAt;
+
+    /**
+     * A row folded into the balance but not covered by the watermark, with the signed amount it added.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AppliedRow {
+        private String transactionId;
+        private Long amount;
+        private Date timestamp;
+    }
+}
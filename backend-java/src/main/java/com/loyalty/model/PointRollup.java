@@ -0,0 +1,40 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Successful ledger rows of one day and {@link PointTransaction.TransactionType}, for one user or
+ * for everyone ({@code scope} GLOBAL, no {@code userId}).
+ * <p>
+ * {@code credited} and {@code debited} are both positive: the points added to and taken from
+ * balances, so a day's TRANSFER rollup shows what moved in each direction.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "point_rollups")
+public class PointRollup {
+    @Id
+    private String id;
+    private Scope scope;
+    private String userId;
+    private String day; // UTC, yyyy-MM-dd
+    private PointTransaction.TransactionType type;
+    private Long count;
+    private Long credited;
+    private Long debited;
+    private Date updatedAt;
+
+    public enum Scope {
+        USER,
+        GLOBAL
+    }
+}
@@ -16,6 +16,7 @@ public class PointTransaction {
     private String description;
     private Date timestamp;
     private String referenceId; // ID của giao dịch liên quan (nếu có)
+    private String anchorBatchId; // Merkle batch the receipt was anchored in
 
     public enum TransactionType {
         EARN,       // Earn points from activities
@@ -59,4 +60,7 @@ public class PointTransaction {
     
     public String getReferenceId() { return referenceId; }
     public void setReferenceId(String referenceId) { this.referenceId = referenceId; }
+    
+    public String getAnchorBatchId() { return anchorBatchId; }
+    public void setAnchorBatchId(String anchorBatchId) { this.anchorBatchId = anchorBatchId; }
 }
@@ -0,0 +1,35 @@
+package com.loyalty.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * Inclusion proof of one transaction receipt in an anchored {@link AnchorBatch}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "receipt_proofs")
+public class ReceiptProof {
+    @Id
+    private String transactionId;
+    private String batchId;
+    private Integer leafIndex;
+    private String leafHash;
+    private List<ProofStep> proof;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProofStep {
+        private String hash;
+        private boolean left; // sibling is on the left of the running hash
+    }
+}
@@ -0,0 +1,7 @@
+package com.loyalty.repository;
+
+import com.loyalty.model.AnchorBatch;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface AnchorBatchRepository extends MongoRepository<AnchorBatch, String> {
+}
@@ -0,0 +1,11 @@
+package com.loyalty.repository;
+
+import com.loyalty.model.GiftRedemption;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Date;
+import java.util.List;
+
+public interface GiftRedemptionRepository extends MongoRepository<GiftRedemption, String> {
+    List<GiftRedemption> findTop100ByStatusAndExpiresAtBefore(GiftRedemption.Status status, Date before);
+}
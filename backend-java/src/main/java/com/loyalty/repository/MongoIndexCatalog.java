@@ -0,0 +1,166 @@
+package com.loyalty.repository;
+
+import com.loyalty.model.Gift;
+import com.loyalty.model.GiftRedemption;
+import com.loyalty.model.IdempotencyRecord;
+import com.loyalty.model.OutboxEvent;
+import com.loyalty.model.PointRollup;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.model.Transaction;
+import com.loyalty.model.User;
+import com.loyalty.model.Voucher;
+import org.bson.Document;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Every index the application relies on, next to the repository queries it serves.
+ * <p>
+ * Indexes are declared here rather than through mapping annotations so they can be reconciled in
+ * the background after startup; each {@link QueryProbe} mirrors a repository query and is
+ * explained against the live collection to catch queries that fall back to a collection scan.
+ * Add both when introducing a new query method. The probes are only a startup smoke check: the
+ * {@code IndexPlanIT} integration test ({@code mvn -Pindex-plans verify}) explains the filters the
+ * application actually sends and fails on any collection scan.
+ */
+public final class MongoIndexCatalog {
+    private static final String PROBE_ID = "__index_probe__";
+
+    private MongoIndexCatalog() {
+    }
+
+    public record ManagedIndex(Class<?> entity, Index definition) {}
+
+    public record QueryProbe(String query, Class<?> entity, Document filter, Document sort) {}
+
+    public static List<ManagedIndex> indexes() {
+        return List.of(
+            // findHistoryPage, streamHistory, findByUserIdOrderByTimestampDesc
+            new ManagedIndex(PointTransaction.class, new Index()
+                .on("userId", Direction.ASC).on("timestamp", Direction.DESC).on("_id", Direction.DESC)
+                .named("user_history")),
+            // balance folds and the snapshot tail
+            new ManagedIndex(PointTransaction.class, new Index()
+                .on("userId", Direction.ASC).on("status", Direction.ASC).on("timestamp", Direction.ASC)
+                .named("user_status_timestamp")),
+            // stale PENDING trade/pay recovery
+            new ManagedIndex(PointTransaction.class, new Index()
+                .on("type", Direction.ASC).on("timestamp", Direction.ASC)
+                .partial(PartialIndexFilter.of(where("status").is("PENDING")))
+                .named("pending_type_timestamp")),
+            // receipts still waiting for an anchor batch
+            new ManagedIndex(PointTransaction.class, new Index()
+                .on("status", Direction.ASC).on("anchorBatchId", Direction.ASC).on("timestamp", Direction.ASC)
+                .named("status_anchor_timestamp")),
+            // rollup backfill of one day
+            new ManagedIndex(PointTransaction.class, new Index()
+                .on("status", Direction.ASC).on("timestamp", Direction.ASC)
+                .named("status_timestamp")),
+
+            new ManagedIndex(User.class, new Index().on("username", Direction.ASC).unique().named("username_unique")),
+            new ManagedIndex(User.class, new Index().on("email", Direction.ASC).unique().named("email_unique")),
+
+            new ManagedIndex(Transaction.class, new Index()
+                .on("userId", Direction.ASC).on("createdAt", Direction.DESC)
+                .named("user_created")),
+
+            new ManagedIndex(Voucher.class, new Index()
+                .on("code", Direction.ASC).unique()
+                .partial(PartialIndexFilter.of(where("active").is(true)))
+                .named("active_code_unique")),
+            // findByActiveTrue and bulk deactivation of expired vouchers
+            new ManagedIndex(Voucher.class, new Index()
+                .on("active", Direction.ASC).on("expiryDate", Direction.ASC)
+                .named("active_expiry")),
+
+            new ManagedIndex(Gift.class, new Index().on("active", Direction.ASC).named("active")),
+
+            // expiry sweep of unconfirmed gift reservations
+            new ManagedIndex(GiftRedemption.class, new Index()
+                .on("status", Direction.ASC).on("expiresAt", Direction.ASC)
+                .named("status_expires")),
+
+            // outbox claim: due PENDING events and expired IN_FLIGHT leases
+            new ManagedIndex(OutboxEvent.class, new Index()
+                .on("status", Direction.ASC).on("nextAttemptAt", Direction.ASC)
+                .named("status_next_attempt")),
+            new ManagedIndex(OutboxEvent.class, new Index()
+                .on("status", Direction.ASC).on("lockedUntil", Direction.ASC)
+                .named("status_locked_until")),
+
+            // replay records expire at expiresAt
+            new ManagedIndex(IdempotencyRecord.class, new Index()
+                .on("expiresAt", Direction.ASC).expire(Duration.ZERO)
+                .named("expires_ttl")),
+
+            // analytics range reads, user and global
+            new ManagedIndex(PointRollup.class, new Index()
+                .on("scope", Direction.ASC).on("userId", Direction.ASC).on("day", Direction.ASC).on("type", Direction.ASC)
+                .named("scope_user_day_type")),
+            // backfill replaces one day
+            new ManagedIndex(PointRollup.class, new Index().on("day", Direction.ASC).named("day"))
+        );
+    }
+
+    public static List<QueryProbe> probes() {
+        Date now = new Date();
+        return List.of(
+            new QueryProbe("PointTransactionRepository.findHistoryPage", PointTransaction.class,
+                new Document("userId", PROBE_ID), new Document("timestamp", -1).append("_id", -1)),
+            new QueryProbe("PointTransactionRepository.countSuccessfulTransactionsByUserId", PointTransaction.class,
+                new Document("userId", PROBE_ID).append("status", "SUCCESS"), null),
+            new QueryProbe("PointTransactionRepository.findBalanceTransactionAmountsByUserId", PointTransaction.class,
+                new Document("userId", PROBE_ID).append("$or", List.of(
+                    new Document("status", "SUCCESS"),
+                    new Document("status", "PENDING").append("type", new Document("$in", List.of("TRADE", "PAY", "REDEEM"))))),
+                null),
+            new QueryProbe("PointTransactionRepository.findBalanceTransactionAmountsByUserIdAfter", PointTransaction.class,
+                new Document("userId", PROBE_ID).append("timestamp", new Document("$gt", now)).append("$or", List.of(
+                    new Document("status", "SUCCESS"),
+                    new Document("status", "PENDING").append("type", new Document("$in", List.of("TRADE", "PAY", "REDEEM"))))),
+                null),
+            new QueryProbe("PointTransactionRepository.findTop100ByStatusAndTypeInAndTimestampBefore", PointTransaction.class,
+                new Document("status", "PENDING")
+                    .append("type", new Document("$in", List.of("TRADE", "PAY")))
+                    .append("timestamp", new Document("$lt", now)), null),
+            new QueryProbe("PointTransactionRepository.findTop500ByStatusAndAnchorBatchIdIsNullAndTimestampBetween", PointTransaction.class,
+                new Document("status", "SUCCESS").append("anchorBatchId", null)
+                    .append("timestamp", new Document("$gt", new Date(0)).append("$lt", now)), null),
+            new QueryProbe("UserRepository.findByUsername", User.class,
+                new Document("username", PROBE_ID), null),
+            new QueryProbe("UserRepository.existsByEmail", User.class,
+                new Document("email", PROBE_ID), null),
+            new QueryProbe("TransactionRepository.findByUserId", Transaction.class,
+                new Document("userId", PROBE_ID), null),
+            new QueryProbe("VoucherRepository.findByCodeAndActiveTrue", Voucher.class,
+                new Document("code", PROBE_ID).append("active", true), null),
+            new QueryProbe("VoucherRepository.findByActiveTrue", Voucher.class,
+                new Document("active", true), null),
+            new QueryProbe("VoucherRedemptionService.deactivateExpired", Voucher.class,
+                new Document("active", true).append("expiryDate", new Document("$lte", now)), null),
+            new QueryProbe("GiftRepository.findByActiveTrue", Gift.class,
+                new Document("active", true), null),
+            new QueryProbe("GiftRedemptionRepository.findTop100ByStatusAndExpiresAtBefore", GiftRedemption.class,
+                new Document("status", "RESERVED").append("expiresAt", new Document("$lt", now)), null),
+            new QueryProbe("BlockchainOutbox.claimNext", OutboxEvent.class,
+                new Document("$or", List.of(
+                    new Document("status", "PENDING").append("nextAttemptAt", new Document("$lte", now)),
+                    new Document("status", "IN_FLIGHT").append("lockedUntil", new Document("$lte", now)))),
+                new Document("nextAttemptAt", 1)),
+            new QueryProbe("PointRollupService.backfillDay", PointTransaction.class,
+                new Document("status", "SUCCESS")
+                    .append("timestamp", new Document("$gte", now).append("$lt", now)), null),
+            new QueryProbe("PointRollupService.find", PointRollup.class,
+                new Document("scope", "USER").append("userId", PROBE_ID)
+                    .append("day", new Document("$gte", "2024-01-01").append("$lte", "2024-12-31")),
+                new Document("day", 1).append("type", 1))
+        );
+    }
+}
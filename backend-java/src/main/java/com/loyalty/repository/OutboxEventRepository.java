@@ -0,0 +1,7 @@
+package com.loyalty.repository;
+
+import com.loyalty.model.OutboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface OutboxEventRepository extends MongoRepository<OutboxEvent, String> {
+}
@@ -0,0 +1,7 @@
+package com.loyalty.repository;
+
+import com.loyalty.model.PointBalance;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface PointBalanceRepository extends MongoRepository<PointBalance, String> {
+}
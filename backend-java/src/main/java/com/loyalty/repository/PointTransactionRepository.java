@@ -3,14 +3,26 @@ package com.loyalty.repository;
 import com.loyalty.model.PointTransaction;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
+import java.util.Date;
 import java.util.List;
 
-public interface PointTransactionRepository extends MongoRepository<PointTransaction, String> {
+public interface PointTransactionRepository extends MongoRepository<PointTransaction, String>, PointTransactionRepositoryCustom {
     List<PointTransaction> findByUserIdOrderByTimestampDesc(String userId);
     
     @Query(value = "{'userId': ?0, 'status': 'SUCCESS'}", count = true)
     Long countSuccessfulTransactionsByUserId(String userId);
     
-    @Query(value = "{'userId': ?0, 'status': 'SUCCESS'}", fields = "{'amount': 1}")
+    @Query(value = "{'userId': ?0, 'status': 'SUCCESS'}", fields = "{'type': 1, 'amount': 1, 'timestamp': 1}")
     List<PointTransaction> findSuccessfulTransactionAmountsByUserId(String userId);
+
+    List<PointTransaction> findTop100ByStatusAndTypeInAndTimestampBefore(
+        PointTransaction.TransactionStatus status, List<PointTransaction.TransactionType> types, Date before);
+
+    @Query("{'_id': ?0, 'status': 'PENDING'}")
+    @Update("{'$set': {'status': ?1, 'blockchainTx': ?2}}")
+    long settlePendingTransaction(String id, PointTransaction.TransactionStatus status, String blockchainTx);
+
+    List<PointTransaction> findTop500ByStatusAndAnchorBatchIdIsNullAndTimestampBetween(
+        PointTransaction.TransactionStatus status, Date after, Date before);
 }
@@ -0,0 +1,44 @@
+package com.loyalty.repository;
+
+import com.loyalty.model.PointTransaction;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface PointTransactionRepositoryCustom {
+    /**
+     * Type, amount and timestamp of every row that counts towards a user's balance: SUCCESS rows
+     * plus pending TRADE/PAY/REDEEM rows, whose amount is held until they are finalised.
+     */
+    List<PointTransaction> findBalanceTransactionAmountsByUserId(String userId);
+
+    /**
+     * The balance rows of a user stamped after {@code after}, with their status.
+     */
+    List<PointTransaction> findBalanceTransactionAmountsByUserIdAfter(String userId, Date after);
+
+    /**
+     * Returns up to {@code limit} rows of a user's history, newest first, strictly after the
+     * (timestamp, id) position of the previous page. Filters are optional.
+     */
+    List<PointTransaction> findHistoryPage(String userId,
+                                           Date afterTimestamp,
+                                           String afterId,
+                                           PointTransaction.TransactionType type,
+                                           PointTransaction.TransactionStatus status,
+                                           Date from,
+                                           Date to,
+                                           int limit);
+
+    /**
+     * Streams a user's history, newest first, over a server-side cursor that fetches
+     * {@code batchSize} rows at a time. The caller must close the stream.
+     */
+    Stream<PointTransaction> streamHistory(String userId,
+                                           PointTransaction.TransactionType type,
+                                           PointTransaction.TransactionStatus status,
+                                           Date from,
+                                           Date to,
+                                           int batchSize);
+}
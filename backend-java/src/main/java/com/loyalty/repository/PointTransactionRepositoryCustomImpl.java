@@ -0,0 +1,116 @@
+package com.loyalty.repository;
+
+import com.loyalty.model.PointTransaction;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class PointTransactionRepositoryCustomImpl implements PointTransactionRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<PointTransaction> findBalanceTransactionAmountsByUserId(String userId) {
+        return mongoTemplate.find(balanceQuery(userId), PointTransaction.class);
+    }
+
+    @Override
+    public List<PointTransaction> findBalanceTransactionAmountsByUserIdAfter(String userId, Date after) {
+        return mongoTemplate.find(balanceAfterQuery(userId, after), PointTransaction.class);
+    }
+
+    @Override
+    public List<PointTransaction> findHistoryPage(String userId,
+                                                  Date afterTimestamp,
+                                                  String afterId,
+                                                  PointTransaction.TransactionType type,
+                                                  PointTransaction.TransactionStatus status,
+                                                  Date from,
+                                                  Date to,
+                                                  int limit) {
+        Criteria criteria = historyCriteria(userId, type, status, from, to);
+        if (afterTimestamp != null) {
+            // Keyset: everything that sorts after (timestamp, _id) in descending order
+            criteria.orOperator(
+                where("timestamp").lt(afterTimestamp),
+                where("timestamp").is(afterTimestamp).and("_id").lt(new ObjectId(afterId)));
+        }
+
+        Query query = Query.query(criteria)
+            .with(Sort.by(Sort.Direction.DESC, "timestamp", "_id"))
+            .limit(limit);
+        return mongoTemplate.find(query, PointTransaction.class);
+    }
+
+    @Override
+    public Stream<PointTransaction> streamHistory(String userId,
+                                                  PointTransaction.TransactionType type,
+                                                  PointTransaction.TransactionStatus status,
+                                                  Date from,
+                                                  Date to,
+                                                  int batchSize) {
+        Query query = Query.query(historyCriteria(userId, type, status, from, to))
+            .with(Sort.by(Sort.Direction.DESC, "timestamp", "_id"))
+            .cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, PointTransaction.class);
+    }
+
+    /**
+     * Rows folded into a balance, projected to what the fold needs. Shared with the reactive balance
+     * service so both stacks fold exactly the same rows.
+     */
+    public static Query balanceQuery(String userId) {
+        return balanceRows(where("userId").is(userId));
+    }
+
+    /**
+     * The balance rows stamped after a checkpoint's watermark, i.e. its tail.
+     */
+    public static Query balanceAfterQuery(String userId, Date after) {
+        return balanceRows(where("userId").is(userId).and("timestamp").gt(after));
+    }
+
+    private static Query balanceRows(Criteria criteria) {
+        Query query = Query.query(criteria.orOperator(
+            where("status").is(PointTransaction.TransactionStatus.SUCCESS),
+            where("status").is(PointTransaction.TransactionStatus.PENDING).and("type").in(
+                PointTransaction.TransactionType.TRADE,
+                PointTransaction.TransactionType.PAY,
+                PointTransaction.TransactionType.REDEEM)));
+        query.fields().include("type", "amount", "status", "timestamp");
+        return query;
+    }
+
+    public static Criteria historyCriteria(String userId,
+                                            PointTransaction.TransactionType type,
+                                            PointTransaction.TransactionStatus status,
+                                            Date from,
+                                            Date to) {
+        Criteria criteria = where("userId").is(userId);
+        if (type != null) {
+            criteria.and("type").is(type);
+        }
+        if (status != null) {
+            criteria.and("status").is(status);
+        }
+        if (from != null || to != null) {
+            Criteria range = criteria.and("timestamp");
+            if (from != null) {
+                range.gte(from);
+            }
+            if (to != null) {
+                range.lt(to);
+            }
+        }
+        return criteria;
+    }
+}
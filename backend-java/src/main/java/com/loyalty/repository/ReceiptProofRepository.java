@@ -0,0 +1,7 @@
+package com.loyalty.repository;
+
+import com.loyalty.model.ReceiptProof;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ReceiptProofRepository extends MongoRepository<ReceiptProof, String> {
+}
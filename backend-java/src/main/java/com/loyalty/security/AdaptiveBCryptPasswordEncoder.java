@@ -0,0 +1,59 @@
+package com.loyalty.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt encoder whose cost factor can be fixed or calibrated to a target hashing latency.
+ * <p>
+ * Stored hashes with a different cost are reported as needing an upgrade, so Spring Security
+ * rehashes them on the next successful login instead of invalidating them.
+ */
+@Slf4j
+public class AdaptiveBCryptPasswordEncoder extends BCryptPasswordEncoder {
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final int strength;
+
+    public AdaptiveBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    /**
+     * Picks the highest cost between {@code min} and {@code max} whose hash time stays within
+     * {@code targetMs} on this machine.
+     */
+    public static AdaptiveBCryptPasswordEncoder calibrated(long targetMs, int min, int max) {
+        new BCryptPasswordEncoder(4).encode("warmup");
+        int chosen = min;
+        for (int cost = min; cost <= max; cost++) {
+            BCryptPasswordEncoder probe = new BCryptPasswordEncoder(cost);
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (elapsedMs > targetMs) {
+                break;
+            }
+            chosen = cost;
+        }
+        log.info("BCrypt cost calibrated to {} for a {} ms target", chosen, targetMs);
+        return new AdaptiveBCryptPasswordEncoder(chosen);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+}
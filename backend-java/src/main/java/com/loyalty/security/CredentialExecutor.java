@@ -0,0 +1,104 @@
+package com.loyalty.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool for credential work (RSA decryption, BCrypt) so a login burst cannot take over
+ * the request threads. When the queue is full, or a task waits longer than the timeout, the
+ * request fails fast with 503.
+ */
+@Component
+public class CredentialExecutor {
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final Counter rejected;
+    private final Timer queueWait;
+    private final Timer workTime;
+
+    public CredentialExecutor(@Value("${security.credential-pool.threads:0}") int threads,
+                              @Value("${security.credential-pool.queue-capacity:64}") int queueCapacity,
+                              @Value("${security.credential-pool.timeout-ms:5000}") long timeoutMs,
+                              MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread t = new Thread(runnable, "credentials-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        this.timeoutMs = timeoutMs;
+
+        Gauge.builder("credentials.pool.queue.depth", executor, e -> e.getQueue().size())
+            .description("Credential operations waiting for a thread")
+            .register(meterRegistry);
+        Gauge.builder("credentials.pool.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Credential operations running")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("credentials.pool.rejected")
+            .description("Credential operations rejected with 503")
+            .register(meterRegistry);
+        this.queueWait = Timer.builder("credentials.pool.wait")
+            .description("Time credential operations spent queued for a thread")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.workTime = Timer.builder("credentials.pool.work")
+            .description("Time spent on credential operations (RSA decryption, BCrypt, user lookup)")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    public <T> T execute(Supplier<T> work) {
+        Future<T> future;
+        try {
+            long submitted = System.nanoTime();
+            future = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return workTime.record(work);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Authentication is busy, retry shortly");
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Authentication is busy, retry shortly");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for credential check", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -2,6 +2,7 @@ package com.loyalty.security;
 
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
@@ -17,6 +18,7 @@ import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 
 @Service
+@Slf4j
 public class RSAEncryptionService {
     @Value("${rsa.private-key}")
     private Resource privateKeyResource;
@@ -29,6 +31,10 @@ public class RSAEncryptionService {
     @Getter
     private PublicKey publicKey;
 
+    // Cipher instances are not thread-safe but can be reused after doFinal, so keep one per thread
+    private final ThreadLocal<Cipher> decryptCipher = ThreadLocal.withInitial(() -> newCipher(Cipher.DECRYPT_MODE, privateKey));
+    private final ThreadLocal<Cipher> encryptCipher = ThreadLocal.withInitial(() -> newCipher(Cipher.ENCRYPT_MODE, publicKey));
+
     @PostConstruct
     public void init() throws Exception {
         // Load keys using InputStream to work with classpath resources
@@ -43,49 +49,37 @@ public class RSAEncryptionService {
 
     public String decrypt(String encryptedData) {
         try {
-            // Log input data for debugging
-            System.out.println("Attempting to decrypt: " + encryptedData);
-            
-            // Create OAEPParameterSpec for decryption
-            OAEPParameterSpec oaepParams = new OAEPParameterSpec(
-                "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT
-            );
-
-            // Initialize cipher with OAEP padding
-            Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING");
-            cipher.init(Cipher.DECRYPT_MODE, privateKey, oaepParams);
-
-            // Decrypt data
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
-            String result = new String(decryptedBytes, StandardCharsets.UTF_8);
-            
-            // Log decrypted result
-            System.out.println("Decryption successful. Result: " + result);
-            return result;
+            byte[] decryptedBytes = decryptCipher.get().doFinal(Base64.getDecoder().decode(encryptedData));
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
-            // Log detailed error
-            System.err.println("Decryption failed. Error: " + e.getMessage());
-            e.printStackTrace();
+            // A cipher that failed mid-operation is not reused
+            decryptCipher.remove();
+            log.warn("Decryption failed: {}", e.getMessage());
             throw new RuntimeException("Failed to decrypt data: " + e.getMessage(), e);
         }
     }
 
     public String encrypt(String data) {
         try {
-            // Create OAEPParameterSpec for encryption
+            byte[] encryptedBytes = encryptCipher.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(encryptedBytes);
+        } catch (Exception e) {
+            encryptCipher.remove();
+            throw new RuntimeException("Failed to encrypt data", e);
+        }
+    }
+
+    private static Cipher newCipher(int mode, Key key) {
+        try {
+            // Initialize cipher with OAEP padding
             OAEPParameterSpec oaepParams = new OAEPParameterSpec(
                 "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT
             );
-
-            // Initialize cipher with OAEP padding
             Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING");
-            cipher.init(Cipher.ENCRYPT_MODE, publicKey, oaepParams);
-
-            // Encrypt data
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encryptedBytes);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to encrypt data", e);
+            cipher.init(mode, key, oaepParams);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialise RSA cipher", e);
         }
     }
 
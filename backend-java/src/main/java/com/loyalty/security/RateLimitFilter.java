@@ -0,0 +1,122 @@
+package com.loyalty.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.loyalty.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the {@link RateLimitProperties} policies after {@link JwtAuthenticationFilter}, so
+ * authenticated routes are limited per user and {@code /api/auth/**} per client IP.
+ * <p>
+ * Each user or IP gets a {@link TokenBucket} per policy, held in a bounded map that drops buckets
+ * idle for {@code idle-expiry-ms}; an evicted bucket simply starts full again. Refused requests get
+ * 429 with a {@code Retry-After} of the seconds until the next token.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final List<Route> routes;
+    private final Cache<String, TokenBucket> buckets;
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled() && !properties.policies().isEmpty();
+        this.routes = properties.policies().stream()
+            .map(policy -> new Route(policy,
+                policy.paths().stream().map(PathPatternParser.defaultInstance::parse).toList(),
+                Counter.builder("security.rate_limit.rejected")
+                    .tag("policy", policy.name())
+                    .description("Requests refused with 429 by rate limit policy")
+                    .register(meterRegistry)))
+            .toList();
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(properties.maxKeys())
+            .expireAfterAccess(Duration.ofMillis(properties.idleExpiryMs()))
+            .build();
+
+        Gauge.builder("security.rate_limit.buckets", buckets, Cache::estimatedSize)
+            .description("Token buckets currently tracked on this node")
+            .register(meterRegistry);
+        if (enabled) {
+            log.info("Rate limiting enabled with policies {}",
+                properties.policies().stream().map(RateLimitProperties.Policy::name).toList());
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Route route = match(request);
+        if (route != null) {
+            RateLimitProperties.Policy policy = route.policy();
+            long now = System.nanoTime();
+            TokenBucket bucket = buckets.get(policy.name() + ':' + subject(policy, request),
+                key -> new TokenBucket(policy.capacity(), policy.refillPerSecond(), now));
+            long waitNanos = bucket.tryAcquire(now);
+            if (waitNanos > 0) {
+                route.rejected().increment();
+                long retryAfter = (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+                response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+                response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests");
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Route match(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI());
+        for (Route route : routes) {
+            for (PathPattern pattern : route.patterns()) {
+                if (pattern.matches(path)) {
+                    return route;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String subject(RateLimitProperties.Policy policy, HttpServletRequest request) {
+        if (policy.key() == RateLimitProperties.Key.USER) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.isAuthenticated()) {
+                return "user:" + authentication.getName();
+            }
+        }
+        // The client behind the proxy: server.forward-headers-strategy unwraps X-Forwarded-For
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private record Route(RateLimitProperties.Policy policy, List<PathPattern> patterns, Counter rejected) {}
+}
@@ -0,0 +1,85 @@
+package com.loyalty.security;
+
+import com.loyalty.model.User;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Bearer-token authentication for the reactive points API. Tokens are verified exactly like
+ * {@link JwtAuthenticationFilter}; a principal missing from {@link UserPrincipalCache} is loaded
+ * with the reactive driver instead of blocking the event loop. Requests without a valid token
+ * are answered with 401 here, since this stack has no security filter chain behind it.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "points.reactive.enabled", havingValue = "true")
+public class ReactiveJwtAuthenticationFilter implements WebFilter {
+    private final JwtTokenProvider tokenProvider;
+    private final UserPrincipalCache userPrincipalCache;
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String jwt = getJwtFromRequest(exchange);
+        Claims claims = StringUtils.hasText(jwt) ? tokenProvider.getVerifiedClaims(jwt) : null;
+        if (claims == null) {
+            return unauthorized(exchange);
+        }
+
+        return loadUser(claims.getSubject())
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .flatMap(user -> {
+                if (user.isEmpty()) {
+                    return unauthorized(exchange);
+                }
+                var authentication = new UsernamePasswordAuthenticationToken(
+                    user.get(), null, user.get().getAuthorities());
+                return chain.filter(exchange.mutate().principal(Mono.just(authentication)).build());
+            });
+    }
+
+    private Mono<User> loadUser(String username) {
+        User cached = userPrincipalCache.getIfPresent(username);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return mongoTemplate.findOne(query(where("username").is(username)), User.class)
+            .doOnNext(userPrincipalCache::put)
+            .onErrorResume(e -> {
+                log.error("Could not load principal {}", username, e);
+                return Mono.empty();
+            });
+    }
+
+    private static Mono<Void> unauthorized(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+        return exchange.getResponse().setComplete();
+    }
+
+    private static String getJwtFromRequest(ServerWebExchange exchange) {
+        String bearerToken = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+        return null;
+    }
+}
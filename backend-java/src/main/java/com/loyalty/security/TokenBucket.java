@@ -0,0 +1,42 @@
+package com.loyalty.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket held in a single {@link AtomicLong}, so acquiring is one CAS with no lock.
+ * <p>
+ * Instead of a token count the bucket stores the time at which it would be full again: each token
+ * pushes that time one refill interval further, and a request is refused when it would land more
+ * than {@code capacity} intervals ahead of now. That is the same admission as a bucket refilled
+ * continuously at {@code refillPerSecond} up to {@code capacity} tokens.
+ */
+public final class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(long capacity, double refillPerSecond, long nowNanos) {
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000d / refillPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes one token.
+     *
+     * @return 0 if a token was taken, otherwise how many nanoseconds until one is available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            long ahead = next - nowNanos;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0L;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.loyalty.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.loyalty.model.User;
+import com.loyalty.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Short-lived cache of authenticated principals keyed by username, so the JWT filter does not hit
+ * Mongo on every request. Entries are dropped whenever a user is saved or deleted on this node;
+ * the TTL bounds how long other nodes can serve a stale principal.
+ */
+@Component
+public class UserPrincipalCache extends AbstractMongoEventListener<User> {
+    private final UserRepository userRepository;
+    private final Cache<String, User> principals;
+
+    public UserPrincipalCache(UserRepository userRepository,
+                              @Value("${jwt.principal-cache.ttl-ms:30000}") long ttlMs,
+                              @Value("${jwt.principal-cache.max-size:10000}") long maxSize,
+                              MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.principals = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "jwt.principals");
+    }
+
+    public User get(String username) {
+        return principals.get(username, name -> userRepository.findByUsername(name)
+            .orElseThrow(() -> new UsernameNotFoundException("User not found")));
+    }
+
+    /**
+     * The cached principal, or {@code null}; for callers that load the user themselves.
+     */
+    public User getIfPresent(String username) {
+        return principals.getIfPresent(username);
+    }
+
+    public void put(User user) {
+        principals.put(user.getUsername(), user);
+    }
+
+    public void invalidate(String username) {
+        principals.invalidate(username);
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        invalidate(event.getSource().getUsername());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        // The event only carries the delete query, not the username
+        principals.invalidateAll();
+    }
+}
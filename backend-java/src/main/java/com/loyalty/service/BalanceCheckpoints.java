@@ -0,0 +1,333 @@
+package com.loyalty.service;
+
+import com.loyalty.model.PointBalance;
+import com.loyalty.model.PointBalance.AppliedRow;
+import com.loyalty.model.PointTransaction;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * The Mongo-free half of the {@link PointBalance} checkpoint algorithm: the updates, guards and
+ * rebuilt checkpoints that {@link PointBalanceService} and {@link ReactivePointBalanceService}
+ * send through their own drivers. Keeping them here means both stacks always write the same
+ * documents.
+ * <p>
+ * Every update that folds a row in is guarded by the row being neither under the watermark nor in
+ * {@code applied}, and lists it there in the same write, so retries and rebuilds can never count a
+ * row twice. The watermark trails the clock by {@code lagMs}, which bounds how long a row may take
+ * between being stamped and being written: a rebuild or compaction only moves the watermark over
+ * rows that already exist.
+ */
+final class BalanceCheckpoints {
+    private BalanceCheckpoints() {
+    }
+
+    static Query checkpoint(String userId) {
+        return query(where("_id").is(userId));
+    }
+
+    /**
+     * Matches the checkpoint only if it has not folded in {@code transaction} yet.
+     */
+    static Query unapplied(PointTransaction transaction) {
+        return query(where("_id").is(transaction.getUserId())
+            .and("lastTimestamp").lt(transaction.getTimestamp())
+            .and("applied.transactionId").ne(transaction.getId()));
+    }
+
+    static Update apply(PointTransaction transaction) {
+        return new Update()
+            .inc("balance", PointBalanceService.signedAmount(transaction))
+            .inc("appliedCount", 1)
+            .inc("version", 1)
+            .push("applied", appliedRow(transaction, PointBalanceService.signedAmount(transaction)))
+            .set("lastTransactionId", transaction.getId())
+            .set("updatedAt", new Date());
+    }
+
+    /**
+     * Matches the checkpoint only if it has folded in none of {@code rows}, which must belong to one user.
+     */
+    static Query unapplied(String userId, List<PointTransaction> rows) {
+        Date earliest = rows.stream().map(PointTransaction::getTimestamp).min(Comparator.naturalOrder()).get();
+        return query(where("_id").is(userId)
+            .and("lastTimestamp").lt(earliest)
+            .and("applied.transactionId").nin(rows.stream().map(PointTransaction::getId).toList()));
+    }
+
+    static Update applyAll(List<PointTransaction> rows) {
+        PointTransaction latest = rows.stream().max(Comparator.comparing(PointTransaction::getTimestamp)).get();
+        return new Update()
+            .inc("balance", PointBalanceService.fold(rows))
+            .inc("appliedCount", rows.size())
+            .inc("version", 1)
+            .push("applied").each(rows.stream()
+                .map(row -> appliedRow(row, PointBalanceService.signedAmount(row)))
+                .toArray())
+            .set("lastTransactionId", latest.getId())
+            .set("updatedAt", new Date());
+    }
+
+    /**
+     * Matches the checkpoint only while its balance covers {@code amount} and the debit is not
+     * reserved yet.
+     */
+    static Query debitGuard(PointTransaction transaction, long amount) {
+        return query(where("_id").is(transaction.getUserId())
+            .and("balance").gte(amount)
+            .and("applied.transactionId").ne(transaction.getId()));
+    }
+
+    static Update debit(PointTransaction transaction, long amount) {
+        return new Update()
+            .inc("balance", -amount)
+            .inc("appliedCount", 1)
+            .inc("version", 1)
+            .push("applied", appliedRow(transaction, -amount))
+            .set("lastTransactionId", transaction.getId())
+            .set("updatedAt", new Date());
+    }
+
+    /**
+     * Matches the checkpoint while it still holds the reservation of {@code transaction}.
+     */
+    static Query reserved(PointTransaction transaction) {
+        return query(where("_id").is(transaction.getUserId()).and("applied.transactionId").is(transaction.getId()));
+    }
+
+    static Update release(PointTransaction transaction) {
+        return new Update()
+            .inc("balance", -PointBalanceService.signedAmount(transaction))
+            .inc("appliedCount", -1)
+            .inc("version", 1)
+            .pull("applied", new Document("transactionId", transaction.getId()))
+            .set("updatedAt", new Date());
+    }
+
+    /**
+     * Matches the checkpoint if it still lists a hold that has now succeeded although the watermark
+     * already covers it. Such a row is counted by the watermark from now on, so the entry has to go;
+     * holds after the watermark are dropped by the next compaction instead.
+     */
+    static Query confirmed(PointTransaction transaction) {
+        return query(where("_id").is(transaction.getUserId())
+            .and("applied.transactionId").is(transaction.getId())
+            .and("lastTimestamp").gte(transaction.getTimestamp()));
+    }
+
+    static Update confirm(PointTransaction transaction) {
+        return new Update()
+            .inc("version", 1)
+            .pull("applied", new Document("transactionId", transaction.getId()));
+    }
+
+    /**
+     * The checkpoint folded from a user's full balance ledger, read after {@code start}.
+     * <p>
+     * The watermark is placed {@code lagMs} before the fold started, so rows stamped before it are
+     * all in the fold. Later rows and pending holds are listed as applied, and so are the reservations
+     * of {@code current} whose rows are not in the ledger yet; reservations older than
+     * {@code staleAfterMs} are dropped, which releases debits that were never written and failed holds
+     * whose release was lost.
+     */
+    static PointBalance rebuilt(String userId, List<PointTransaction> ledger, PointBalance current,
+                                long start, long lagMs, long staleAfterMs) {
+        Date watermark = new Date(start - lagMs);
+        List<AppliedRow> applied = new ArrayList<>();
+        Set<String> folded = new HashSet<>();
+        long balance = 0L;
+        PointTransaction latest = null;
+        for (PointTransaction tx : ledger) {
+            folded.add(tx.getId());
+            balance += PointBalanceService.signedAmount(tx);
+            if (tx.getTimestamp().after(watermark) || tx.getStatus() == PointTransaction.TransactionStatus.PENDING) {
+                applied.add(appliedRow(tx, PointBalanceService.signedAmount(tx)));
+            }
+            if (latest == null || tx.getTimestamp().after(latest.getTimestamp())) {
+                latest = tx;
+            }
+        }
+        if (current != null && current.getApplied() != null) {
+            for (AppliedRow row : current.getApplied()) {
+                if (!folded.contains(row.getTransactionId()) && row.getTimestamp().getTime() >= start - staleAfterMs) {
+                    applied.add(row);
+                    balance += row.getAmount();
+                }
+            }
+        }
+
+        return PointBalance.builder()
+            .userId(userId)
+            .balance(balance)
+            .appliedCount((long) ledger.size())
+            .version(current != null && current.getVersion() != null ? current.getVersion() + 1 : 0L)
+            .applied(applied)
+            .lastTransactionId(latest != null ? latest.getId() : null)
+            .lastTimestamp(watermark)
+            .updatedAt(new Date())
+            .build();
+    }
+
+    /**
+     * Matches {@code current} only if nothing changed it since it was read, so a rebuild never
+     * overwrites a concurrent update.
+     */
+    static Query unchanged(PointBalance current) {
+        return query(where("_id").is(current.getUserId()).and("version").is(current.getVersion()));
+    }
+
+    static Update replace(PointBalance rebuilt) {
+        return new Update()
+            .set("balance", rebuilt.getBalance())
+            .set("appliedCount", rebuilt.getAppliedCount())
+            .set("version", rebuilt.getVersion())
+            .set("applied", rebuilt.getApplied())
+            .set("lastTransactionId", rebuilt.getLastTransactionId())
+            .set("lastTimestamp", rebuilt.getLastTimestamp())
+            .set("updatedAt", rebuilt.getUpdatedAt());
+    }
+
+    /**
+     * How a checkpoint relates to its tail, the balance rows stamped after its watermark.
+     *
+     * @param unapplied tail rows not folded in yet, to add to the balance on read
+     * @param stale     a row written but never applied, or a reservation whose row never arrived,
+     *                  is older than {@code staleAfterMs}; only a rebuild puts that right
+     * @param watermark where a compaction may move the watermark, or {@code null} if it has nothing to drop
+     * @param settled   ids of SUCCESS rows a compaction to {@code watermark} drops from the list
+     */
+    record Tail(List<PointTransaction> unapplied, boolean stale, Date watermark, List<String> settled) {
+    }
+
+    static Tail tail(PointBalance checkpoint, List<PointTransaction> rows, long lagMs, long staleAfterMs) {
+        long now = System.currentTimeMillis();
+        long staleBefore = now - staleAfterMs;
+        Set<String> listed = new HashSet<>();
+        List<AppliedRow> applied = checkpoint.getApplied() != null ? checkpoint.getApplied() : List.of();
+        applied.forEach(row -> listed.add(row.getTransactionId()));
+        Set<String> inTail = new HashSet<>();
+        rows.forEach(row -> inTail.add(row.getId()));
+
+        // The watermark may not pass a row that is not folded in yet
+        long limit = now - lagMs;
+        boolean stale = false;
+        List<PointTransaction> unapplied = new ArrayList<>();
+        for (PointTransaction row : rows) {
+            if (!listed.contains(row.getId())) {
+                unapplied.add(row);
+                limit = Math.min(limit, row.getTimestamp().getTime() - 1);
+                stale |= row.getTimestamp().getTime() < staleBefore;
+            }
+        }
+        // Nor a reserved debit whose row is not written yet, or it would stay listed for good
+        for (AppliedRow row : applied) {
+            if (row.getTimestamp().after(checkpoint.getLastTimestamp()) && !inTail.contains(row.getTransactionId())) {
+                limit = Math.min(limit, row.getTimestamp().getTime() - 1);
+                stale |= row.getTimestamp().getTime() < staleBefore;
+            }
+        }
+
+        List<String> settled = new ArrayList<>();
+        if (limit > checkpoint.getLastTimestamp().getTime()) {
+            for (PointTransaction row : rows) {
+                if (row.getStatus() == PointTransaction.TransactionStatus.SUCCESS
+                        && listed.contains(row.getId()) && row.getTimestamp().getTime() <= limit) {
+                    settled.add(row.getId());
+                }
+            }
+        }
+        return new Tail(unapplied, stale, settled.isEmpty() ? null : new Date(limit), settled);
+    }
+
+    /**
+     * Matches the checkpoint only while its watermark is still the one the tail was read against.
+     */
+    static Query compactable(PointBalance checkpoint) {
+        return query(where("_id").is(checkpoint.getUserId()).and("lastTimestamp").is(checkpoint.getLastTimestamp()));
+    }
+
+    static Update compact(Tail tail) {
+        return new Update()
+            .set("lastTimestamp", tail.watermark())
+            .pull("applied", new Document("transactionId", new Document("$in", tail.settled())));
+    }
+
+    /**
+     * Matches checkpoints listing more than {@code compactAfter} rows, which writes then compact.
+     */
+    static Query overgrown(List<String> userIds, int compactAfter) {
+        Query query = query(where("_id").in(userIds).and("applied." + compactAfter).exists(true));
+        query.fields().include("_id");
+        return query;
+    }
+
+    /**
+     * Projects just enough of an updated checkpoint to tell how many rows it lists.
+     */
+    static Query listedIds(Query query) {
+        query.fields().include("applied.transactionId");
+        return query;
+    }
+
+    static boolean isOvergrown(PointBalance probed, int compactAfter) {
+        return probed.getApplied() != null && probed.getApplied().size() > compactAfter;
+    }
+
+    private static AppliedRow appliedRow(PointTransaction transaction, long amount) {
+        return new AppliedRow(transaction.getId(), amount, transaction.getTimestamp());
+    }
+
+    /**
+     * {@code points.balance.read} timers and {@code points.balance.fold.rows} summaries by the path a
+     * read took. Both services register the same meters, so their reads add up in one series.
+     */
+    static final class Meters {
+        final Timer snapshotReads;
+        final Timer tailReads;
+        final Timer rebuildReads;
+        final DistributionSummary tailRows;
+        final DistributionSummary rebuildRows;
+
+        Meters(MeterRegistry meterRegistry) {
+            this.snapshotReads = readTimer("snapshot", meterRegistry);
+            this.tailReads = readTimer("tail", meterRegistry);
+            this.rebuildReads = readTimer("rebuild", meterRegistry);
+            this.tailRows = foldRows("tail", meterRegistry);
+            this.rebuildRows = foldRows("rebuild", meterRegistry);
+        }
+
+        static void record(Timer timer, long start) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        private static Timer readTimer(String path, MeterRegistry meterRegistry) {
+            return Timer.builder("points.balance.read")
+                .tag("path", path)
+                .description("Balance reads by the path they took through the checkpoint")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        }
+
+        private static DistributionSummary foldRows(String path, MeterRegistry meterRegistry) {
+            return DistributionSummary.builder("points.balance.fold.rows")
+                .tag("path", path)
+                .description("Ledger rows summed by a balance fold")
+                .register(meterRegistry);
+        }
+    }
+}
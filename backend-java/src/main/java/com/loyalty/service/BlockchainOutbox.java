@@ -0,0 +1,97 @@
+package com.loyalty.service;
+
+import com.loyalty.model.OutboxEvent;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Outbox of blockchain calls that still have to be made for TRADE/PAY rows.
+ * <p>
+ * Events are keyed by the transaction id, so enqueueing is idempotent and can be repeated by the
+ * crash recovery scan. Dispatchers claim events with a lease; an event whose lease expires is
+ * claimable again, which covers dispatchers that died mid-call.
+ */
+@Service
+@RequiredArgsConstructor
+public class BlockchainOutbox {
+    private final OutboxEventRepository outboxEventRepository;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${points.outbox.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${points.outbox.base-backoff-ms:1000}")
+    private long baseBackoffMs;
+
+    @Value("${points.outbox.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    public void enqueue(PointTransaction transaction) {
+        Date now = new Date();
+        Update update = new Update()
+            .setOnInsert("type", transaction.getType())
+            .setOnInsert("status", OutboxEvent.Status.PENDING)
+            .setOnInsert("attempts", 0)
+            .setOnInsert("nextAttemptAt", now)
+            .setOnInsert("createdAt", now);
+        mongoTemplate.upsert(query(where("_id").is(transaction.getId())), update, OutboxEvent.class);
+    }
+
+    /**
+     * Claims the next due event, or returns {@code null} if nothing is due.
+     */
+    public OutboxEvent claimNext() {
+        Date now = new Date();
+        Query due = new Query(new Criteria().orOperator(
+                where("status").is(OutboxEvent.Status.PENDING).and("nextAttemptAt").lte(now),
+                where("status").is(OutboxEvent.Status.IN_FLIGHT).and("lockedUntil").lte(now)))
+            .with(Sort.by("nextAttemptAt"));
+        Update claim = new Update()
+            .set("status", OutboxEvent.Status.IN_FLIGHT)
+            .set("lockedUntil", new Date(now.getTime() + leaseMs))
+            .inc("attempts", 1);
+        return mongoTemplate.findAndModify(due, claim, FindAndModifyOptions.options().returnNew(true), OutboxEvent.class);
+    }
+
+    public void complete(OutboxEvent event) {
+        outboxEventRepository.deleteById(event.getTransactionId());
+    }
+
+    public void retry(OutboxEvent event, String error) {
+        Update update = new Update()
+            .set("status", OutboxEvent.Status.PENDING)
+            .set("nextAttemptAt", new Date(System.currentTimeMillis() + backoff(event.getAttempts())))
+            .set("lastError", error)
+            .unset("lockedUntil");
+        mongoTemplate.updateFirst(query(where("_id").is(event.getTransactionId())), update, OutboxEvent.class);
+    }
+
+    public void fail(OutboxEvent event, String error) {
+        Update update = new Update()
+            .set("status", OutboxEvent.Status.FAILED)
+            .set("lastError", error)
+            .unset("lockedUntil");
+        mongoTemplate.updateFirst(query(where("_id").is(event.getTransactionId())), update, OutboxEvent.class);
+    }
+
+    private long backoff(int attempts) {
+        // Exponential with full jitter, capped at max-backoff-ms
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempts, 20));
+        return ThreadLocalRandom.current().nextLong(baseBackoffMs, Math.max(baseBackoffMs, ceiling) + 1);
+    }
+}
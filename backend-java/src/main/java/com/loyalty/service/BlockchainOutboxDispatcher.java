@@ -0,0 +1,149 @@
+package com.loyalty.service;
+
+import com.loyalty.config.VirtualThreads;
+import com.loyalty.model.OutboxEvent;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.repository.PointTransactionRepository;
+import com.loyalty.service.BlockchainService.BlockchainResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the {@link BlockchainOutbox}: calls backend-go for each claimed event and settles the
+ * PENDING transaction, with at most {@code points.outbox.concurrency} calls in flight per node.
+ * A FAILED reply settles the transaction FAILED right away; calls that got no answer are retried
+ * with backoff up to {@code points.outbox.max-attempts} times.
+ */
+@Component
+@Slf4j
+public class BlockchainOutboxDispatcher {
+    private final BlockchainOutbox outbox;
+    private final BlockchainService blockchainService;
+    private final PointsService pointsService;
+    private final PointTransactionRepository transactionRepository;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxAttempts;
+    private final long recoveryAgeMs;
+
+    public BlockchainOutboxDispatcher(BlockchainOutbox outbox,
+                                      BlockchainService blockchainService,
+                                      PointsService pointsService,
+                                      PointTransactionRepository transactionRepository,
+                                      @Value("${points.outbox.concurrency:8}") int concurrency,
+                                      @Value("${points.outbox.max-attempts:8}") int maxAttempts,
+                                      @Value("${points.outbox.recovery-age-ms:60000}") long recoveryAgeMs,
+                                      @Value("${points.threads.virtual:false}") boolean virtualThreads) {
+        this.outbox = outbox;
+        this.blockchainService = blockchainService;
+        this.pointsService = pointsService;
+        this.transactionRepository = transactionRepository;
+        this.maxAttempts = maxAttempts;
+        this.recoveryAgeMs = recoveryAgeMs;
+        this.permits = new Semaphore(concurrency);
+        if (virtualThreads && VirtualThreads.isSupported()) {
+            // The permits already bound the calls in flight
+            this.executor = VirtualThreads.newThreadPerTaskExecutor("outbox-dispatch-vt-");
+        } else {
+            AtomicInteger threads = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread t = new Thread(runnable, "outbox-dispatch-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${points.outbox.poll-interval-ms:200}")
+    public void poll() {
+        while (permits.tryAcquire()) {
+            OutboxEvent event;
+            try {
+                event = outbox.claimNext();
+            } catch (RuntimeException e) {
+                permits.release();
+                log.error("Could not claim outbox event", e);
+                return;
+            }
+            if (event == null) {
+                permits.release();
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    dispatch(event);
+                } catch (RuntimeException e) {
+                    // The lease expires and the event is picked up again
+                    log.error("Error dispatching outbox event {}", event.getTransactionId(), e);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Re-enqueues PENDING rows whose outbox event was never written, e.g. after a crash between
+     * the two inserts.
+     */
+    @Scheduled(fixedDelayString = "${points.outbox.recovery-interval-ms:60000}")
+    public void recoverOrphans() {
+        List<PointTransaction> pending = transactionRepository.findTop100ByStatusAndTypeInAndTimestampBefore(
+            PointTransaction.TransactionStatus.PENDING,
+            List.of(PointTransaction.TransactionType.TRADE, PointTransaction.TransactionType.PAY),
+            new Date(System.currentTimeMillis() - recoveryAgeMs));
+        for (PointTransaction transaction : pending) {
+            outbox.enqueue(transaction);
+        }
+    }
+
+    private void dispatch(OutboxEvent event) {
+        PointTransaction transaction = transactionRepository.findById(event.getTransactionId()).orElse(null);
+        if (transaction == null || transaction.getStatus() != PointTransaction.TransactionStatus.PENDING) {
+            outbox.complete(event);
+            return;
+        }
+
+        BlockchainResponse response = transaction.getType() == PointTransaction.TransactionType.TRADE
+            ? blockchainService.trade(transaction)
+            : blockchainService.pay(transaction);
+
+        if (response != null && "SUCCESS".equals(response.status())) {
+            pointsService.settleBlockchainTransaction(transaction, response);
+            outbox.complete(event);
+            return;
+        }
+
+        String error = response != null ? response.error() : "Empty response from blockchain service";
+        if (response != null && "FAILED".equals(response.status())) {
+            // Refused by backend-go: the same request would be refused again
+            log.warn("Blockchain service rejected {} {}: {}", transaction.getType(), transaction.getId(), error);
+            pointsService.settleBlockchainTransaction(transaction, response);
+            outbox.fail(event, error);
+        } else if (event.getAttempts() >= maxAttempts) {
+            log.warn("Giving up on {} {} after {} attempts: {}",
+                transaction.getType(), transaction.getId(), event.getAttempts(), error);
+            pointsService.settleBlockchainTransaction(transaction, new BlockchainResponse(null, "FAILED", error));
+            outbox.fail(event, error);
+        } else {
+            outbox.retry(event, error);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -1,28 +1,83 @@
 package com.loyalty.service;
 
+import com.loyalty.config.BlockchainClientProperties;
 import com.loyalty.model.PointTransaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Client for backend-go. Every call goes through a bulkhead (bounded concurrent calls) and a
+ * circuit breaker, and is timed per operation. Failures come back as a response too: FAILED when
+ * backend-go refused the request (a FAILED reply or a 4xx), so sending it again cannot help, and
+ * UNAVAILABLE when the call never got an answer (transport error, 5xx, breaker open, bulkhead full).
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class BlockchainService {
     private final RestTemplate restTemplate;
-    
+    private final MeterRegistry meterRegistry;
+    private final Semaphore bulkhead;
+    private final long bulkheadMaxWaitMs;
+    private final CircuitBreaker circuitBreaker;
+    private final Counter bulkheadRejections;
+    private final Counter circuitRejections;
+    // Resolved once per operation and outcome (SUCCESS, FAILED, EMPTY or ERROR), the registry lookup allocates
+    private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
+
     @Value("${blockchain.service.url}")
     private String blockchainServiceUrl;
 
+    public BlockchainService(RestTemplate restTemplate,
+                             BlockchainClientProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.meterRegistry = meterRegistry;
+        this.bulkhead = new Semaphore(properties.bulkhead().maxConcurrentCalls());
+        this.bulkheadMaxWaitMs = properties.bulkhead().maxWaitMs();
+        BlockchainClientProperties.CircuitBreaker breaker = properties.circuitBreaker();
+        this.circuitBreaker = new CircuitBreaker(breaker.failureRateThreshold(), breaker.slidingWindowSize(),
+            breaker.minimumCalls(), breaker.openDurationMs(), breaker.halfOpenCalls());
+
+        this.bulkheadRejections = Counter.builder("blockchain.client.rejected")
+            .tag("reason", "bulkhead")
+            .description("Blockchain calls rejected before reaching backend-go")
+            .register(meterRegistry);
+        this.circuitRejections = Counter.builder("blockchain.client.rejected")
+            .tag("reason", "circuit_open")
+            .description("Blockchain calls rejected before reaching backend-go")
+            .register(meterRegistry);
+        Gauge.builder("blockchain.client.circuit.state", circuitBreaker, cb -> cb.state().ordinal())
+            .description("0 = closed, 1 = open, 2 = half-open")
+            .register(meterRegistry);
+    }
+
     public record BlockchainRequest(
         String userId,
         Long amount,
         String transactionId
     ) {}
 
+    public record MerkleAnchorRequest(
+        String transactionId,
+        Long amount,
+        String merkleRoot
+    ) {}
+
     public record BlockchainResponse(
         String txHash,
         String status,
@@ -36,18 +91,8 @@ public class BlockchainService {
             transaction.getAmount(),
             transaction.getId()
         );
-        
-        try {
-            ResponseEntity<BlockchainResponse> response = restTemplate.postForEntity(
-                endpoint,
-                request,
-                BlockchainResponse.class
-            );
-            return response.getBody();
-        } catch (Exception e) {
-            log.error("Error calling blockchain trade service", e);
-            return new BlockchainResponse(null, "FAILED", e.getMessage());
-        }
+
+        return call("trade", () -> restTemplate.postForEntity(endpoint, request, BlockchainResponse.class));
     }
 
     public BlockchainResponse pay(PointTransaction transaction) {
@@ -57,18 +102,8 @@ public class BlockchainService {
             transaction.getAmount(),
             transaction.getId()
         );
-        
-        try {
-            ResponseEntity<BlockchainResponse> response = restTemplate.postForEntity(
-                endpoint,
-                request,
-                BlockchainResponse.class
-            );
-            return response.getBody();
-        } catch (Exception e) {
-            log.error("Error calling blockchain pay service", e);
-            return new BlockchainResponse(null, "FAILED", e.getMessage());
-        }
+
+        return call("pay", () -> restTemplate.postForEntity(endpoint, request, BlockchainResponse.class));
     }
 
     public BlockchainResponse anchorReceipt(PointTransaction transaction) {
@@ -78,32 +113,101 @@ public class BlockchainService {
             transaction.getAmount(),
             transaction.getId()
         );
-        
-        try {
-            ResponseEntity<BlockchainResponse> response = restTemplate.postForEntity(
-                endpoint,
-                request,
-                BlockchainResponse.class
-            );
-            return response.getBody();
-        } catch (Exception e) {
-            log.error("Error calling blockchain anchor service", e);
-            return new BlockchainResponse(null, "FAILED", e.getMessage());
-        }
+
+        return call("anchor", () -> restTemplate.postForEntity(endpoint, request, BlockchainResponse.class));
+    }
+
+    /**
+     * Anchors the Merkle root of a receipt batch. The batch id travels as the transaction id and
+     * the number of leaves as the amount.
+     */
+    public BlockchainResponse anchorMerkleRoot(String batchId, String merkleRoot, int leafCount) {
+        String endpoint = blockchainServiceUrl + "/blockchain/anchor-receipt";
+        var request = new MerkleAnchorRequest(batchId, (long) leafCount, merkleRoot);
+
+        return call("anchor_batch", () -> restTemplate.postForEntity(endpoint, request, BlockchainResponse.class));
     }
 
     public BlockchainResponse getStatus(String txId) {
         String endpoint = blockchainServiceUrl + "/blockchain/status?txId=" + txId;
-        
+
+        return call("status", () -> restTemplate.getForEntity(endpoint, BlockchainResponse.class));
+    }
+
+    private BlockchainResponse call(String operation, Supplier<ResponseEntity<BlockchainResponse>> request) {
+        if (!acquireBulkhead()) {
+            bulkheadRejections.increment();
+            return new BlockchainResponse(null, "UNAVAILABLE", "Too many concurrent blockchain calls");
+        }
+        try {
+            if (!circuitBreaker.tryAcquire()) {
+                circuitRejections.increment();
+                return new BlockchainResponse(null, "UNAVAILABLE", "Blockchain circuit breaker is open");
+            }
+
+            long start = System.nanoTime();
+            String outcome = "ERROR";
+            try {
+                BlockchainResponse body = request.get().getBody();
+                // A FAILED body is still a healthy backend, only transport errors trip the breaker
+                circuitBreaker.onSuccess();
+                outcome = outcome(body);
+                return body;
+            } catch (Exception e) {
+                if (isRejection(e)) {
+                    // backend-go answered, it just will not take this request
+                    circuitBreaker.onSuccess();
+                    outcome = "FAILED";
+                    log.warn("Blockchain {} request rejected: {}", operation, e.getMessage());
+                    return new BlockchainResponse(null, "FAILED", e.getMessage());
+                }
+                circuitBreaker.onFailure();
+                log.error("Error calling blockchain {} service", operation, e);
+                return new BlockchainResponse(null, "UNAVAILABLE", e.getMessage());
+            } finally {
+                requestTimer(operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Tag value for a reply, from a fixed set so an unexpected status cannot add a new series.
+     */
+    private static String outcome(BlockchainResponse body) {
+        if (body == null) {
+            return "EMPTY";
+        }
+        if ("SUCCESS".equals(body.status()) || "FAILED".equals(body.status())) {
+            return body.status();
+        }
+        return "ERROR";
+    }
+
+    private static boolean isRejection(Exception e) {
+        if (!(e instanceof HttpClientErrorException clientError)) {
+            return false;
+        }
+        int status = clientError.getStatusCode().value();
+        return status != HttpStatus.REQUEST_TIMEOUT.value() && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private Timer requestTimer(String operation, String outcome) {
+        return requestTimers.computeIfAbsent(operation + ':' + outcome, key -> Timer.builder("blockchain.client.requests")
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .description("Calls to backend-go by BlockchainService method and outcome")
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+
+    private boolean acquireBulkhead() {
         try {
-            ResponseEntity<BlockchainResponse> response = restTemplate.getForEntity(
-                endpoint,
-                BlockchainResponse.class
-            );
-            return response.getBody();
-        } catch (Exception e) {
-            log.error("Error calling blockchain status service", e);
-            return new BlockchainResponse(null, "FAILED", e.getMessage());
+            return bulkhead.tryAcquire(bulkheadMaxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
-}
\ No newline at end of file
+}
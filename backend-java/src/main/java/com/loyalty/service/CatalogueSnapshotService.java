@@ -0,0 +1,173 @@
+package com.loyalty.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loyalty.model.Gift;
+import com.loyalty.model.Voucher;
+import com.loyalty.repository.GiftRepository;
+import com.loyalty.repository.VoucherRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.MongoMappingEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Immutable, pre-serialised snapshots of the active gift and voucher catalogues.
+ * <p>
+ * Reads only dereference a volatile field and never reach Mongo. Snapshots are rebuilt on a
+ * schedule and shortly after a gift or voucher is saved or deleted through this node, and a
+ * rebuild with unchanged content keeps the previous snapshot (and its ETag).
+ */
+@Service
+@Slf4j
+public class CatalogueSnapshotService {
+    private final GiftRepository giftRepository;
+    private final VoucherRepository voucherRepository;
+    private final GiftStockService giftStockService;
+    private final ObjectMapper objectMapper;
+
+    private volatile CatalogueSnapshot gifts;
+    private volatile CatalogueSnapshot vouchers;
+
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final Executor refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread t = new Thread(runnable, "catalogue-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CatalogueSnapshotService(GiftRepository giftRepository,
+                                    VoucherRepository voucherRepository,
+                                    GiftStockService giftStockService,
+                                    ObjectMapper objectMapper) {
+        this.giftRepository = giftRepository;
+        this.voucherRepository = voucherRepository;
+        this.giftStockService = giftStockService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * One serialised catalogue. The ETag is a strong validator of the JSON body; the gzip variant
+     * carries its own ETag since its bytes differ.
+     */
+    public record CatalogueSnapshot(
+        List<?> items,
+        byte[] json,
+        byte[] gzippedJson,
+        String etag,
+        String gzipEtag,
+        Instant builtAt
+    ) {}
+
+    public CatalogueSnapshot gifts() {
+        return gifts;
+    }
+
+    public CatalogueSnapshot vouchers() {
+        return vouchers;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        requestRefresh();
+    }
+
+    @EventListener({AfterSaveEvent.class, AfterDeleteEvent.class})
+    public void onCatalogueChange(MongoMappingEvent<?> event) {
+        String collection = event.getCollectionName();
+        if ("gifts".equals(collection) || "vouchers".equals(collection)) {
+            requestRefresh();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${points.catalogue.refresh-ms:60000}",
+               initialDelayString = "${points.catalogue.refresh-ms:60000}")
+    public void scheduledRefresh() {
+        requestRefresh();
+    }
+
+    /**
+     * Queues a rebuild; requests arriving while one is already queued are folded into it.
+     */
+    public void requestRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                refreshQueued.set(false);
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    log.warn("Catalogue refresh failed, keeping the previous snapshot: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    public void refresh() {
+        List<Gift> activeGifts = giftRepository.findByActiveTrue();
+        if (activeGifts.stream().anyMatch(gift -> gift.getStockShards() != null)) {
+            // Sharded gifts keep their stock in the shard counters
+            Map<String, Integer> totals = giftStockService.shardedTotals();
+            activeGifts.stream()
+                .filter(gift -> gift.getStockShards() != null)
+                .forEach(gift -> gift.setStock(totals.getOrDefault(gift.getId(), 0)));
+        }
+        List<Voucher> activeVouchers = voucherRepository.findByActiveTrue();
+        gifts = swap(gifts, activeGifts, "gifts");
+        vouchers = swap(vouchers, activeVouchers, "vouchers");
+    }
+
+    private CatalogueSnapshot swap(CatalogueSnapshot current, List<?> items, String name) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(items);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialise " + name + " catalogue", e);
+        }
+        String hash = sha256(json);
+        String etag = "\"" + hash + "\"";
+        if (current != null && current.etag().equals(etag)) {
+            return current;
+        }
+
+        CatalogueSnapshot next = new CatalogueSnapshot(
+            List.copyOf(items), json, gzip(json), etag, "\"" + hash + "-gzip\"", Instant.now());
+        log.info("Catalogue {} rebuilt: {} items, {} bytes ({} gzipped)",
+            name, items.size(), json.length, next.gzippedJson().length);
+        return next;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not gzip catalogue", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
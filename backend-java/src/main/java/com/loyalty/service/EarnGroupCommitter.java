@@ -0,0 +1,241 @@
+package com.loyalty.service;
+
+import com.loyalty.model.PointTransaction;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group commit for EARN rows. Callers park on a shared buffer; a single flusher takes up to
+ * {@code points.group-commit.max-batch} rows, or whatever arrived within {@code max-delay-ms} of
+ * the first one, writes them with one unordered bulk insert and completes each caller with its own
+ * row or error as soon as the insert returns. The balance checkpoints are updated afterwards with one
+ * bulk update; if that fails the earns still stand, and reads fold the rows from the ledger tail.
+ * <p>
+ * The bulk insert uses the same write concern as a single save, so a caller that gets its row back
+ * has exactly the durability it had before; batching only shares the round trips.
+ * <p>
+ * Callers wait at most {@code wait-timeout-ms}. Once shutdown has begun, or the flusher thread has
+ * died, new rows are turned away with 503 and rows still buffered are failed instead of left waiting.
+ */
+@Component
+@Slf4j
+public class EarnGroupCommitter {
+    private final MongoTemplate mongoTemplate;
+    private final PointBalanceService pointBalanceService;
+    private final ReceiptAnchorService receiptAnchorService;
+    private final PointRollupService pointRollupService;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final long waitTimeoutMs;
+    private final BlockingQueue<Pending> buffer;
+    private final DistributionSummary batchSizes;
+    private final Counter rejected;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public EarnGroupCommitter(MongoTemplate mongoTemplate,
+                              PointBalanceService pointBalanceService,
+                              ReceiptAnchorService receiptAnchorService,
+                              PointRollupService pointRollupService,
+                              @Value("${points.group-commit.enabled:false}") boolean enabled,
+                              @Value("${points.group-commit.max-batch:256}") int maxBatch,
+                              @Value("${points.group-commit.max-delay-ms:2}") long maxDelayMs,
+                              @Value("${points.group-commit.queue-capacity:10000}") int queueCapacity,
+                              @Value("${points.group-commit.wait-timeout-ms:10000}") long waitTimeoutMs,
+                              MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.pointBalanceService = pointBalanceService;
+        this.receiptAnchorService = receiptAnchorService;
+        this.pointRollupService = pointRollupService;
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.buffer = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("earn.group_commit.queue.depth", buffer, BlockingQueue::size)
+            .description("EARN rows waiting for the next group commit")
+            .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("earn.group_commit.batch.size")
+            .description("Rows written per group commit")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("earn.group_commit.rejected")
+            .description("EARN rows rejected because the group commit buffer was full")
+            .register(meterRegistry);
+
+        this.flusher = new Thread(this::runFlusher, "earn-group-commit");
+        this.flusher.setDaemon(true);
+        if (enabled) {
+            flusher.start();
+            log.info("EARN group commit enabled: batches of up to {} rows, {} ms window", maxBatch, maxDelayMs);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the row for the next group commit and waits until it is written.
+     */
+    public PointTransaction commit(PointTransaction transaction) {
+        transaction.setId(new ObjectId().toHexString());
+        transaction.setTimestamp(new Date());
+        Pending pending = new Pending(transaction, new CompletableFuture<>());
+        if (!running || !flusher.isAlive()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Earn writer is shutting down, retry shortly");
+        }
+        if (!buffer.offer(pending)) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many pending earn requests, retry shortly");
+        }
+
+        try {
+            return pending.result().get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (buffer.remove(pending)) {
+                // Never handed to the flusher, so it will not be written
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Earn was not written in time, retry shortly");
+            }
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                "Timed out waiting for the earn to be written; it may still be recorded");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void runFlusher() {
+        try {
+            flushUntilStopped();
+        } finally {
+            running = false;
+            List<Pending> stranded = new ArrayList<>();
+            buffer.drainTo(stranded);
+            stranded.forEach(pending -> pending.result().completeExceptionally(
+                new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Earn writer stopped, retry shortly")));
+            if (!stranded.isEmpty()) {
+                log.warn("Group commit stopped with {} rows still buffered; they were not written", stranded.size());
+            }
+        }
+    }
+
+    private void flushUntilStopped() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !buffer.isEmpty()) {
+            try {
+                Pending first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    if (buffer.drainTo(batch, maxBatch - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Group commit of {} rows failed", batch.size(), e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            } catch (Error e) {
+                // Fail the batch before the thread dies; runFlusher then fails whatever is still buffered
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+                throw e;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        List<PointTransaction> rows = batch.stream().map(Pending::transaction).toList();
+        RuntimeException[] failures = new RuntimeException[batch.size()];
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PointTransaction.class)
+                .insert(rows)
+                .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                failures[error.getIndex()] = error.getCode() == 11000
+                    ? new DuplicateKeyException(error.getMessage())
+                    : new IllegalStateException(error.getMessage());
+            }
+        }
+
+        List<PointTransaction> written = new ArrayList<>(rows.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            if (failures[i] != null) {
+                pending.result().completeExceptionally(failures[i]);
+            } else {
+                written.add(pending.transaction());
+                pending.result().complete(pending.transaction());
+            }
+        }
+
+        // The rows are in the ledger either way: a failed apply only leaves the checkpoints behind, and
+        // reads count the unapplied rows from the tail until they rebuild them after stale-after-ms
+        try {
+            pointBalanceService.applyAll(written);
+        } catch (RuntimeException e) {
+            log.warn("Applying {} group-committed rows to balance checkpoints failed, leaving them to the next read",
+                written.size(), e);
+        }
+        for (PointTransaction transaction : written) {
+            pointRollupService.record(transaction);
+            receiptAnchorService.submit(transaction);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (enabled) {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private record Pending(PointTransaction transaction, CompletableFuture<PointTransaction> result) {}
+}
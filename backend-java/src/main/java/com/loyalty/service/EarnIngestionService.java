@@ -0,0 +1,385 @@
+package com.loyalty.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loyalty.dto.EarnEvent;
+import com.loyalty.dto.IngestionReport;
+import com.loyalty.dto.IngestionReport.Outcome;
+import com.loyalty.dto.IngestionReport.RowResult;
+import com.loyalty.model.IngestionJob;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.model.User;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Ingests partner earn files (CSV or NDJSON) as a stream. Rows are validated, grouped into
+ * batches of {@code points.ingestion.batch-size}, and written with unordered bulk inserts;
+ * balances are then applied with one bulk update per batch.
+ * <p>
+ * A row's transaction id is derived from the partner id and the partner's event id, so a
+ * resubmitted file (or a row repeated within one) hits the unique {@code _id} and is reported as a
+ * duplicate instead of being credited twice. A partially processed file can simply be sent again.
+ * Ledger lanes are bypassed: rows are only ever inserted, never reserved against a balance.
+ */
+@Service
+@Slf4j
+public class EarnIngestionService {
+    private static final int DUPLICATE_KEY = 11000;
+    private static final Pattern FILE_ID = Pattern.compile("[A-Za-z0-9._-]{1,128}");
+    private static final List<String> CSV_COLUMNS = List.of("eventId", "userId", "amount", "description");
+
+    private final MongoTemplate mongoTemplate;
+    private final PointBalanceService pointBalanceService;
+    private final ReceiptAnchorService receiptAnchorService;
+    private final PointRollupService pointRollupService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long maxAmount;
+    private final int maxReportedRows;
+    private final Counter insertedRows;
+    private final Counter duplicateRows;
+    private final Counter rejectedRows;
+
+    public EarnIngestionService(MongoTemplate mongoTemplate,
+                                PointBalanceService pointBalanceService,
+                                ReceiptAnchorService receiptAnchorService,
+                                PointRollupService pointRollupService,
+                                ObjectMapper objectMapper,
+                                @Value("${points.ingestion.batch-size:1000}") int batchSize,
+                                @Value("${points.ingestion.max-amount:1000000}") long maxAmount,
+                                @Value("${points.ingestion.max-reported-rows:1000}") int maxReportedRows,
+                                MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.pointBalanceService = pointBalanceService;
+        this.receiptAnchorService = receiptAnchorService;
+        this.pointRollupService = pointRollupService;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxAmount = maxAmount;
+        this.maxReportedRows = maxReportedRows;
+        this.insertedRows = rows(meterRegistry, "inserted");
+        this.duplicateRows = rows(meterRegistry, "duplicate");
+        this.rejectedRows = rows(meterRegistry, "rejected");
+    }
+
+    public IngestionReport ingest(String partnerId,
+                                  String fileId,
+                                  HistoryExportService.Format format,
+                                  InputStream body) throws IOException {
+        if (fileId == null || !FILE_ID.matcher(fileId).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "fileId must be 1-128 letters, digits, '.', '_' or '-'");
+        }
+        IngestionJob job = start(partnerId, fileId);
+        Run run = new Run(partnerId);
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 64 * 1024);
+            int[] columns = format == HistoryExportService.Format.CSV ? csvHeader(reader.readLine()) : null;
+            String line;
+            long lineNumber = columns != null ? 1 : 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                run.rows++;
+                EarnEvent event;
+                try {
+                    event = columns != null ? csvRow(line, columns) : objectMapper.readValue(line, EarnEvent.class);
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    run.reject(lineNumber, null, "Malformed row");
+                    continue;
+                }
+                String error = validate(event);
+                if (error != null) {
+                    run.reject(lineNumber, event.getEventId(), error);
+                    continue;
+                }
+                run.add(lineNumber, event);
+                if (run.batch.size() >= batchSize) {
+                    flush(run);
+                }
+            }
+            flush(run);
+        } catch (IOException | RuntimeException e) {
+            finish(job, run, IngestionJob.Status.FAILED, e.getMessage());
+            throw e;
+        }
+        return new IngestionReport(finish(job, run, IngestionJob.Status.COMPLETED, null), run.results, run.truncated);
+    }
+
+    public IngestionJob getJob(String partnerId, String fileId) {
+        IngestionJob job = mongoTemplate.findById(partnerId + ":" + fileId, IngestionJob.class);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ingestion job not found");
+        }
+        return job;
+    }
+
+    private void flush(Run run) {
+        if (run.batch.isEmpty()) {
+            return;
+        }
+        List<PointTransaction> batch = run.batch;
+        List<Long> lines = run.lines;
+        run.batch = new ArrayList<>(batchSize);
+        run.lines = new ArrayList<>(batchSize);
+
+        // Unknown users are rejected with one lookup per batch
+        Set<String> userIds = new HashSet<>();
+        batch.forEach(tx -> userIds.add(tx.getUserId()));
+        Set<String> known = new HashSet<>(mongoTemplate.findDistinct(
+            query(where("username").in(userIds)), "username", User.class, String.class));
+        List<PointTransaction> rows = new ArrayList<>(batch.size());
+        List<Long> rowLines = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PointTransaction tx = batch.get(i);
+            if (known.contains(tx.getUserId())) {
+                rows.add(tx);
+                rowLines.add(lines.get(i));
+            } else {
+                run.reject(lines.get(i), tx.getReferenceId(), "Unknown user");
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        boolean[] failed = new boolean[rows.size()];
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PointTransaction.class)
+                .insert(rows)
+                .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                int index = error.getIndex();
+                failed[index] = true;
+                PointTransaction tx = rows.get(index);
+                if (error.getCode() == DUPLICATE_KEY) {
+                    run.duplicate(rowLines.get(index), tx.getReferenceId());
+                } else {
+                    run.reject(rowLines.get(index), tx.getReferenceId(), error.getMessage());
+                }
+            }
+        }
+
+        List<PointTransaction> inserted = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (!failed[i]) {
+                inserted.add(rows.get(i));
+            }
+        }
+        pointBalanceService.applyAll(inserted);
+        inserted.forEach(pointRollupService::record);
+        inserted.forEach(receiptAnchorService::submit);
+        run.inserted += inserted.size();
+        insertedRows.increment(inserted.size());
+    }
+
+    private String validate(EarnEvent event) {
+        if (event.getEventId() == null || event.getEventId().isBlank()) {
+            return "eventId is required";
+        }
+        if (event.getUserId() == null || event.getUserId().isBlank()) {
+            return "userId is required";
+        }
+        if (event.getAmount() == null || event.getAmount() < 1 || event.getAmount() > maxAmount) {
+            return "amount must be between 1 and " + maxAmount;
+        }
+        return null;
+    }
+
+    private IngestionJob start(String partnerId, String fileId) {
+        Update update = new Update()
+            .set("partnerId", partnerId)
+            .set("fileId", fileId)
+            .set("status", IngestionJob.Status.RUNNING)
+            .set("startedAt", new Date())
+            .inc("submissions", 1)
+            .unset("finishedAt")
+            .unset("error");
+        return mongoTemplate.findAndModify(query(where("_id").is(partnerId + ":" + fileId)), update,
+            FindAndModifyOptions.options().upsert(true).returnNew(true), IngestionJob.class);
+    }
+
+    private IngestionJob finish(IngestionJob job, Run run, IngestionJob.Status status, String error) {
+        job.setStatus(status);
+        job.setRows(run.rows);
+        job.setInserted(run.inserted);
+        job.setDuplicates(run.duplicates);
+        job.setRejected(run.rejected);
+        job.setError(error);
+        job.setFinishedAt(new Date());
+        mongoTemplate.save(job);
+        log.info("Ingestion {} {}: {} rows, {} inserted, {} duplicates, {} rejected",
+            job.getId(), status, run.rows, run.inserted, run.duplicates, run.rejected);
+        return job;
+    }
+
+    private int[] csvHeader(String header) {
+        if (header == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "CSV upload is empty");
+        }
+        List<String> names = Arrays.stream(splitCsv(header)).map(String::trim).toList();
+        int[] columns = new int[CSV_COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = names.indexOf(CSV_COLUMNS.get(i));
+            if (columns[i] < 0 && i < 3) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "CSV header must contain " + CSV_COLUMNS.get(i));
+            }
+        }
+        return columns;
+    }
+
+    private static EarnEvent csvRow(String line, int[] columns) {
+        String[] fields = splitCsv(line);
+        return new EarnEvent(
+            field(fields, columns[0]),
+            field(fields, columns[1]),
+            Long.valueOf(field(fields, columns[2]).trim()),
+            field(fields, columns[3]));
+    }
+
+    private static String field(String[] fields, int column) {
+        if (column < 0) {
+            return null;
+        }
+        if (column >= fields.length) {
+            throw new IllegalArgumentException("Missing column " + column);
+        }
+        return fields[column];
+    }
+
+    // RFC 4180 fields on a single line: quoted fields may contain commas and doubled quotes
+    private static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Same partner event, same id: the first 12 bytes of SHA-256(partnerId:eventId), shaped like
+     * an ObjectId so it sorts and pages like any other ledger row.
+     */
+    static String transactionId(String partnerId, String eventId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest((partnerId + ":" + eventId).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Counter rows(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ingestion.rows")
+            .tag("result", result)
+            .description("Partner earn rows processed by outcome")
+            .register(meterRegistry);
+    }
+
+    private final class Run {
+        private final String partnerId;
+        private List<PointTransaction> batch = new ArrayList<>(batchSize);
+        private List<Long> lines = new ArrayList<>(batchSize);
+        private final List<RowResult> results = new ArrayList<>();
+        private boolean truncated;
+        private long rows;
+        private long inserted;
+        private long duplicates;
+        private long rejected;
+
+        private Run(String partnerId) {
+            this.partnerId = partnerId;
+        }
+
+        private void add(long line, EarnEvent event) {
+            var transaction = new PointTransaction();
+            transaction.setId(transactionId(partnerId, event.getEventId()));
+            transaction.setUserId(event.getUserId());
+            transaction.setType(PointTransaction.TransactionType.EARN);
+            transaction.setAmount(event.getAmount());
+            transaction.setStatus(PointTransaction.TransactionStatus.SUCCESS);
+            transaction.setDescription(event.getDescription() != null
+                ? event.getDescription()
+                : "Partner earn: " + partnerId);
+            transaction.setReferenceId(event.getEventId());
+            transaction.setTimestamp(new Date());
+            batch.add(transaction);
+            lines.add(line);
+        }
+
+        private void duplicate(long line, String eventId) {
+            duplicates++;
+            duplicateRows.increment();
+            report(new RowResult(line, eventId, Outcome.DUPLICATE, null));
+        }
+
+        private void reject(long line, String eventId, String error) {
+            rejected++;
+            rejectedRows.increment();
+            report(new RowResult(line, eventId, Outcome.REJECTED, error));
+        }
+
+        private void report(RowResult result) {
+            if (results.size() < maxReportedRows) {
+                results.add(result);
+            } else {
+                truncated = true;
+            }
+        }
+    }
+}
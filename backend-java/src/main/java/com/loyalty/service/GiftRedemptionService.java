@@ -0,0 +1,175 @@
+package com.loyalty.service;
+
+import com.loyalty.config.GiftRedemptionProperties;
+import com.loyalty.model.Gift;
+import com.loyalty.model.GiftRedemption;
+import com.loyalty.repository.GiftRedemptionRepository;
+import com.loyalty.repository.GiftRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Two-step gift redemption: {@link #reserve} takes the stock and holds the points, then
+ * {@link #confirm} makes the redemption final or {@link #release} gives both back. Reservations
+ * that are not confirmed within {@code points.gifts.reservation-ttl-ms} are released by the sweep.
+ * <p>
+ * The redemption row is written first and records each step once it is done, so a release only
+ * ever returns what was actually taken. A node dying between taking stock and recording it leaks
+ * those units rather than risking an oversell.
+ */
+@Service
+@Slf4j
+public class GiftRedemptionService {
+    private final GiftRepository giftRepository;
+    private final GiftRedemptionRepository redemptionRepository;
+    private final GiftStockService giftStockService;
+    private final PointsService pointsService;
+    private final MongoTemplate mongoTemplate;
+    private final GiftRedemptionProperties properties;
+
+    public GiftRedemptionService(GiftRepository giftRepository,
+                                 GiftRedemptionRepository redemptionRepository,
+                                 GiftStockService giftStockService,
+                                 PointsService pointsService,
+                                 MongoTemplate mongoTemplate,
+                                 GiftRedemptionProperties properties) {
+        this.giftRepository = giftRepository;
+        this.redemptionRepository = redemptionRepository;
+        this.giftStockService = giftStockService;
+        this.pointsService = pointsService;
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+    }
+
+    public GiftRedemption reserve(String userId, String giftId, int quantity) {
+        if (quantity < 1 || quantity > properties.maxQuantity()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Quantity must be between 1 and " + properties.maxQuantity());
+        }
+        Gift gift = giftRepository.findById(giftId)
+            .filter(Gift::isActive)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Gift not found"));
+
+        Date now = new Date();
+        GiftRedemption redemption = redemptionRepository.insert(GiftRedemption.builder()
+            .id(new ObjectId().toHexString())
+            .userId(userId)
+            .giftId(giftId)
+            .quantity(quantity)
+            .pointsCost(gift.getPointsCost() * quantity)
+            .status(GiftRedemption.Status.RESERVED)
+            .expiresAt(new Date(now.getTime() + properties.reservationTtlMs()))
+            .createdAt(now)
+            .updatedAt(now)
+            .build());
+
+        Integer counter = giftStockService.take(gift, quantity);
+        if (counter == null) {
+            markReleased(redemption);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Gift is out of stock");
+        }
+        mongoTemplate.updateFirst(query(where("_id").is(redemption.getId())),
+            Update.update("stockShard", counter), GiftRedemption.class);
+        redemption.setStockShard(counter);
+
+        try {
+            pointsService.holdForRedemption(redemption.getId(), userId, redemption.getPointsCost(),
+                "Redeem gift: " + gift.getName());
+        } catch (RuntimeException e) {
+            release(redemption);
+            throw e;
+        }
+        return redemption;
+    }
+
+    public GiftRedemption confirm(String userId, String redemptionId) {
+        GiftRedemption confirmed = mongoTemplate.findAndModify(
+            query(where("_id").is(redemptionId).and("userId").is(userId)
+                .and("status").is(GiftRedemption.Status.RESERVED)
+                .and("expiresAt").gt(new Date())),
+            new Update().set("status", GiftRedemption.Status.CONFIRMED).set("updatedAt", new Date()),
+            FindAndModifyOptions.options().returnNew(true),
+            GiftRedemption.class);
+        if (confirmed == null) {
+            throw notReserved(userId, redemptionId);
+        }
+        pointsService.settleHold(confirmed.getId(), userId, confirmed.getPointsCost(), true);
+        return confirmed;
+    }
+
+    public GiftRedemption release(String userId, String redemptionId) {
+        GiftRedemption redemption = redemptionRepository.findById(redemptionId)
+            .filter(r -> userId.equals(r.getUserId()))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Redemption not found"));
+        if (!release(redemption)) {
+            throw notReserved(userId, redemptionId);
+        }
+        redemption.setStatus(GiftRedemption.Status.RELEASED);
+        return redemption;
+    }
+
+    @Scheduled(fixedDelayString = "${points.gifts.sweep-interval-ms:30000}")
+    public void releaseExpired() {
+        List<GiftRedemption> expired = redemptionRepository.findTop100ByStatusAndExpiresAtBefore(
+            GiftRedemption.Status.RESERVED, new Date());
+        int released = 0;
+        for (GiftRedemption redemption : expired) {
+            try {
+                if (release(redemption)) {
+                    released++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not release expired redemption {}: {}", redemption.getId(), e.getMessage());
+            }
+        }
+        if (released > 0) {
+            log.info("Released {} expired gift reservations", released);
+        }
+    }
+
+    /**
+     * Moves a RESERVED redemption to RELEASED and, only if this call won that transition, returns
+     * its stock and points. The points hold is settled as FAILED, which releases it at most once.
+     */
+    private boolean release(GiftRedemption redemption) {
+        GiftRedemption previous = markReleased(redemption);
+        if (previous == null) {
+            return false;
+        }
+        if (previous.getStockShard() != null) {
+            giftStockService.restore(previous.getGiftId(), previous.getStockShard(), previous.getQuantity());
+        }
+        pointsService.settleHold(previous.getId(), previous.getUserId(), previous.getPointsCost(), false);
+        return true;
+    }
+
+    private GiftRedemption markReleased(GiftRedemption redemption) {
+        return mongoTemplate.findAndModify(
+            query(where("_id").is(redemption.getId()).and("status").is(GiftRedemption.Status.RESERVED)),
+            new Update().set("status", GiftRedemption.Status.RELEASED).set("updatedAt", new Date()),
+            FindAndModifyOptions.options().returnNew(false),
+            GiftRedemption.class);
+    }
+
+    private ResponseStatusException notReserved(String userId, String redemptionId) {
+        boolean exists = redemptionRepository.findById(redemptionId)
+            .filter(r -> userId.equals(r.getUserId()))
+            .isPresent();
+        return exists
+            ? new ResponseStatusException(HttpStatus.CONFLICT, "Redemption is no longer reserved")
+            : new ResponseStatusException(HttpStatus.NOT_FOUND, "Redemption not found");
+    }
+}
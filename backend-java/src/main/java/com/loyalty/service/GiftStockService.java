@@ -0,0 +1,233 @@
+package com.loyalty.service;
+
+import com.loyalty.config.GiftRedemptionProperties;
+import com.loyalty.model.Gift;
+import com.loyalty.model.GiftStockShard;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Atomic gift stock counters.
+ * <p>
+ * By default a gift's stock is its own {@code stock} field, decremented with a conditional
+ * {@code $inc} guarded by {@code stock >= quantity}, so it can never go negative. A hot gift can
+ * instead spread its stock over N {@link GiftStockShard} documents: each claim starts at a random
+ * shard and moves on when one runs dry, so concurrent claims land on different documents instead
+ * of queueing on one. Shards this node has seen empty are skipped until stock is returned to them,
+ * and a claim for several units that no single shard can cover is taken from several.
+ */
+@Service
+@Slf4j
+@EnableConfigurationProperties(GiftRedemptionProperties.class)
+public class GiftStockService {
+    public static final int GIFT_COUNTER = -1;
+    private static final int MAX_SHARDS = 64;
+
+    private final MongoTemplate mongoTemplate;
+    private final GiftRedemptionProperties properties;
+    private final Map<String, AtomicLong> emptyShards = new ConcurrentHashMap<>();
+
+    public GiftStockService(MongoTemplate mongoTemplate, GiftRedemptionProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void shardConfiguredGifts() {
+        properties.shardedGifts().forEach((giftId, shards) -> {
+            try {
+                enableSharding(giftId, shards);
+            } catch (RuntimeException e) {
+                log.warn("Could not shard stock of gift {}: {}", giftId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Takes {@code quantity} units of stock.
+     *
+     * @return the counter the units came from ({@link #GIFT_COUNTER} or a shard index), or
+     *         {@code null} if the gift does not have enough stock left
+     */
+    public Integer take(Gift gift, int quantity) {
+        Integer shards = gift.getStockShards();
+        if (shards == null || shards <= 0) {
+            long taken = mongoTemplate.updateFirst(
+                query(where("_id").is(gift.getId()).and("active").is(true).and("stock").gte(quantity)),
+                new Update().inc("stock", -quantity), Gift.class).getModifiedCount();
+            return taken > 0 ? GIFT_COUNTER : null;
+        }
+
+        // Shards carry no active flag: check the gift as it was loaded for this claim
+        if (!gift.isActive()) {
+            return null;
+        }
+        AtomicLong empty = emptyShards.computeIfAbsent(gift.getId(), id -> new AtomicLong());
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        // First pass skips shards known to be empty, the second makes sure before reporting sold out
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < shards; i++) {
+                int shard = (start + i) % shards;
+                long bit = 1L << shard;
+                if (pass == 0 && (empty.get() & bit) != 0) {
+                    continue;
+                }
+                if (takeFromShard(gift.getId(), shard, quantity)) {
+                    return shard;
+                }
+                empty.accumulateAndGet(bit, (mask, b) -> mask | b);
+            }
+        }
+        return quantity > 1 ? takeAcrossShards(gift.getId(), shards, quantity) : null;
+    }
+
+    /**
+     * Takes a multi-unit claim that no single shard can cover from several of them, giving back what
+     * it took if the total falls short. Reports the first shard used: counters are interchangeable,
+     * so {@link #restore} can return every unit there.
+     */
+    private Integer takeAcrossShards(String giftId, int shards, int quantity) {
+        List<String> ids = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            ids.add(shardId(giftId, i));
+        }
+        Map<Integer, Integer> taken = new LinkedHashMap<>();
+        int remaining = quantity;
+        for (GiftStockShard counter : mongoTemplate.find(
+                query(where("_id").in(ids).and("stock").gt(0)), GiftStockShard.class)) {
+            int units = Math.min(counter.getStock(), remaining);
+            // Skipped if a concurrent claim got there first; the shortfall is handled below
+            if (takeFromShard(giftId, counter.getShard(), units)) {
+                taken.put(counter.getShard(), units);
+                remaining -= units;
+                if (remaining == 0) {
+                    return taken.keySet().iterator().next();
+                }
+            }
+        }
+        taken.forEach((shard, units) -> restore(giftId, shard, units));
+        return null;
+    }
+
+    private boolean takeFromShard(String giftId, int shard, int quantity) {
+        return mongoTemplate.updateFirst(
+            query(where("_id").is(shardId(giftId, shard)).and("stock").gte(quantity)),
+            new Update().inc("stock", -quantity), GiftStockShard.class).getModifiedCount() > 0;
+    }
+
+    /**
+     * Returns units taken by {@link #take} to the counter they came from. Units taken from the gift's
+     * own counter before it was sharded go to one of its shards instead, since {@link #take} no longer
+     * reads {@code Gift.stock} once the gift has them.
+     */
+    public void restore(String giftId, int counter, int quantity) {
+        if (counter == GIFT_COUNTER) {
+            long restored = mongoTemplate.updateFirst(query(where("_id").is(giftId).and("stockShards").isNull()),
+                new Update().inc("stock", quantity), Gift.class).getModifiedCount();
+            if (restored > 0) {
+                return;
+            }
+            Gift gift = mongoTemplate.findById(giftId, Gift.class);
+            if (gift == null || gift.getStockShards() == null) {
+                return;
+            }
+            if (gift.getStockShardSeed() != null) {
+                // Counters may not all exist yet; create them first so the units are not lost
+                enableSharding(giftId, gift.getStockShards());
+            }
+            counter = ThreadLocalRandom.current().nextInt(gift.getStockShards());
+        }
+        mongoTemplate.updateFirst(query(where("_id").is(shardId(giftId, counter))),
+            new Update().inc("stock", quantity), GiftStockShard.class);
+        AtomicLong empty = emptyShards.get(giftId);
+        if (empty != null) {
+            long bit = 1L << counter;
+            empty.accumulateAndGet(bit, (mask, b) -> mask & ~b);
+        }
+    }
+
+    /**
+     * Moves a gift's stock into {@code shards} counters. The gift's own counter is zeroed, marked
+     * sharded and the moved units recorded as {@code stockShardSeed} in one update, so no unit can be
+     * taken from both places. The counters are then created from the seed, which is cleared once they
+     * all exist; until then the gift looks sold out. A node that stopped in between finishes the job
+     * the next time the gift is sharded, e.g. on startup.
+     */
+    public void enableSharding(String giftId, int shards) {
+        if (shards < 2 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 2 and " + MAX_SHARDS);
+        }
+        while (true) {
+            Gift gift = mongoTemplate.findById(giftId, Gift.class);
+            if (gift == null) {
+                return;
+            }
+            if (gift.getStockShards() != null) {
+                if (gift.getStockShardSeed() != null) {
+                    seedShards(giftId, gift.getStockShards(), gift.getStockShardSeed());
+                }
+                return;
+            }
+
+            int stock = gift.getStock() != null ? Math.max(gift.getStock(), 0) : 0;
+            long marked = mongoTemplate.updateFirst(
+                query(where("_id").is(giftId).and("stockShards").isNull().and("stock").is(gift.getStock())),
+                new Update().set("stock", 0).set("stockShards", shards).set("stockShardSeed", stock),
+                Gift.class).getModifiedCount();
+            if (marked > 0) {
+                seedShards(giftId, shards, stock);
+                return;
+            }
+            // Stock was taken or another node sharded the gift meanwhile: look again
+        }
+    }
+
+    private void seedShards(String giftId, int shards, int stock) {
+        for (int i = 0; i < shards; i++) {
+            // Insert-only, so running it again never refills a counter that has been taken from
+            mongoTemplate.upsert(query(where("_id").is(shardId(giftId, i))), new Update()
+                .setOnInsert("giftId", giftId)
+                .setOnInsert("shard", i)
+                .setOnInsert("stock", stock / shards + (i < stock % shards ? 1 : 0)),
+                GiftStockShard.class);
+        }
+        mongoTemplate.updateFirst(query(where("_id").is(giftId)), new Update().unset("stockShardSeed"), Gift.class);
+        emptyShards.remove(giftId);
+        log.info("Spread {} units of gift {} over {} stock counters", stock, giftId, shards);
+    }
+
+    /**
+     * Remaining stock of every sharded gift, summed over its counters.
+     */
+    public Map<String, Integer> shardedTotals() {
+        Aggregation sum = Aggregation.newAggregation(Aggregation.group("giftId").sum("stock").as("stock"));
+        Map<String, Integer> totals = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(sum, GiftStockShard.class, Document.class)) {
+            totals.put(row.getString("_id"), ((Number) row.get("stock")).intValue());
+        }
+        return totals;
+    }
+
+    private static String shardId(String giftId, int shard) {
+        return giftId + ":" + shard;
+    }
+}
@@ -0,0 +1,158 @@
+package com.loyalty.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.repository.PointTransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a user's full history straight from a Mongo cursor to an output stream, one row at a
+ * time. Memory use is one cursor batch plus the write buffer, and a slow client slows the cursor
+ * down because every write blocks on the socket.
+ * <p>
+ * CSV text that users can choose, the description and reference, is quoted as needed and prefixed with
+ * {@code '} when it starts like a spreadsheet formula ({@code = + - @}, tab or carriage return).
+ */
+@Service
+@Slf4j
+public class HistoryExportService {
+    private static final String CSV_HEADER = "id,type,amount,status,timestamp,description,referenceId,blockchainTx,anchorBatchId";
+
+    private final PointTransactionRepository transactionRepository;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public HistoryExportService(PointTransactionRepository transactionRepository,
+                                ObjectMapper objectMapper,
+                                @Value("${points.export.batch-size:500}") int batchSize) {
+        this.transactionRepository = transactionRepository;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public void export(String userId,
+                       Format format,
+                       PointTransaction.TransactionType type,
+                       PointTransaction.TransactionStatus status,
+                       Date from,
+                       Date to,
+                       boolean gzip,
+                       OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+        long rows;
+        try (Stream<PointTransaction> history = transactionRepository.streamHistory(userId, type, status, from, to, batchSize)) {
+            rows = format == Format.CSV
+                ? writeCsv(history.iterator(), target)
+                : writeNdjson(history.iterator(), target);
+        }
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+        target.flush();
+        log.debug("Exported {} history rows for user {} as {}", rows, userId, format);
+    }
+
+    private long writeCsv(Iterator<PointTransaction> rows, OutputStream out) throws IOException {
+        // Not closed on purpose: the servlet container owns the underlying stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long count = 0;
+        while (rows.hasNext()) {
+            PointTransaction row = rows.next();
+            writer.write(csv(row.getId()));
+            writer.write(',');
+            writer.write(csv(row.getType()));
+            writer.write(',');
+            writer.write(csv(row.getAmount()));
+            writer.write(',');
+            writer.write(csv(row.getStatus()));
+            writer.write(',');
+            writer.write(row.getTimestamp() != null ? row.getTimestamp().toInstant().toString() : "");
+            writer.write(',');
+            writer.write(csv(text(row.getDescription())));
+            writer.write(',');
+            writer.write(csv(text(row.getReferenceId())));
+            writer.write(',');
+            writer.write(csv(row.getBlockchainTx()));
+            writer.write(',');
+            writer.write(csv(row.getAnchorBatchId()));
+            writer.write('\n');
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private long writeNdjson(Iterator<PointTransaction> rows, OutputStream out) throws IOException {
+        long count = 0;
+        try (SequenceWriter writer = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValues(out)) {
+            while (rows.hasNext()) {
+                writer.write(rows.next());
+                count++;
+            }
+        }
+        if (count > 0) {
+            out.write('\n');
+        }
+        return count;
+    }
+
+    // Spreadsheets run a cell starting with one of these as a formula
+    private static String text(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        return "=+-@\t\r".indexOf(value.charAt(0)) >= 0 ? "'" + value : value;
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
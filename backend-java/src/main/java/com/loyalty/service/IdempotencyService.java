@@ -0,0 +1,278 @@
+package com.loyalty.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.loyalty.model.IdempotencyRecord;
+import com.loyalty.model.PointTransaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Replays the stored response of a mutating points request retried with the same
+ * {@code Idempotency-Key}, instead of executing it again.
+ * <p>
+ * Completed responses are served from a bounded in-memory cache and fall back to
+ * {@link IdempotencyRecord}s in Mongo, which a TTL index expires after {@code points.idempotency.ttl-ms}.
+ * A key is claimed in Mongo with a lease before the request runs, so a duplicate on another node
+ * gets 409 while the first is still running; duplicates on the same node wait for the first
+ * execution and share its outcome. Failed requests are not stored, so the client can retry them.
+ * <p>
+ * The owning node renews the lease every {@code points.idempotency.renew-ms} while the request runs,
+ * so only a key whose node died is taken over, and the takeover keeps the original fingerprint.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final MongoTemplate mongoTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final long ttlMs;
+    private final long leaseMs;
+    private final long waitMs;
+    private final Cache<String, StoredResponse> responses;
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter conflicts;
+
+    public IdempotencyService(MongoTemplate mongoTemplate,
+                              @Value("${points.idempotency.ttl-ms:86400000}") long ttlMs,
+                              @Value("${points.idempotency.lease-ms:60000}") long leaseMs,
+                              @Value("${points.idempotency.wait-ms:30000}") long waitMs,
+                              @Value("${points.idempotency.cache-size:100000}") long cacheSize,
+                              MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.ttlMs = ttlMs;
+        this.leaseMs = leaseMs;
+        this.waitMs = waitMs;
+        this.responses = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "points.idempotency");
+
+        this.executed = outcome("executed", meterRegistry);
+        this.replayed = outcome("replayed", meterRegistry);
+        this.conflicts = outcome("conflict", meterRegistry);
+    }
+
+    private static Counter outcome(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("points.idempotency.requests")
+            .tag("outcome", outcome)
+            .description("Requests carrying an Idempotency-Key by how they were answered")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Response as stored for replay.
+     */
+    public record StoredResponse(String fingerprint, int status, PointTransaction body) {}
+
+    /**
+     * Runs {@code request} once per user and key. Without a key the request simply runs.
+     *
+     * @param fingerprint identifies the request the key was first used with; reusing the key for a
+     *                    different request is rejected with 422
+     */
+    public ResponseEntity<PointTransaction> execute(String userId, String key, String fingerprint,
+                                                    Supplier<ResponseEntity<PointTransaction>> request) {
+        if (key == null) {
+            return request.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String id = userId + ':' + key;
+        StoredResponse cached = responses.getIfPresent(id);
+        if (cached != null) {
+            return replay(cached, fingerprint);
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> first = inFlight.putIfAbsent(id, mine);
+        if (first != null) {
+            return replay(await(first), fingerprint);
+        }
+
+        try {
+            StoredResponse stored = claimOrReplay(id, fingerprint);
+            if (stored == null) {
+                stored = run(id, fingerprint, request);
+                executed.increment();
+                mine.complete(stored);
+                return toResponse(stored, false);
+            }
+            mine.complete(stored);
+            responses.put(id, stored);
+            return replay(stored, fingerprint);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    /**
+     * Claims the key in Mongo. Returns {@code null} if this node now owns it, or the stored response
+     * if an earlier request already completed.
+     */
+    private StoredResponse claimOrReplay(String id, String fingerprint) {
+        Date now = new Date();
+        try {
+            mongoTemplate.insert(IdempotencyRecord.builder()
+                .id(id)
+                .fingerprint(fingerprint)
+                .status(IdempotencyRecord.Status.IN_PROGRESS)
+                .owner(nodeId)
+                .lockedUntil(new Date(now.getTime() + leaseMs))
+                .createdAt(now)
+                .expiresAt(new Date(now.getTime() + ttlMs))
+                .build());
+            return null;
+        } catch (DuplicateKeyException e) {
+            // Claimed before, possibly on another node
+        }
+
+        IdempotencyRecord existing = mongoTemplate.findById(id, IdempotencyRecord.class);
+        if (existing == null) {
+            // Expired or released in between
+            return claimOrReplay(id, fingerprint);
+        }
+        if (existing.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+            return new StoredResponse(existing.getFingerprint(), existing.getResponseStatus(), existing.getResponse());
+        }
+        if (!existing.getFingerprint().equals(fingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                HEADER + " was already used for a different request");
+        }
+
+        // Take over a lease whose owner died before completing; a live owner keeps renewing it
+        Update takeOver = new Update()
+            .set("owner", nodeId)
+            .set("lockedUntil", new Date(now.getTime() + leaseMs))
+            .set("expiresAt", new Date(now.getTime() + ttlMs));
+        boolean claimed = mongoTemplate.updateFirst(
+            query(where("_id").is(id)
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("fingerprint").is(fingerprint)
+                .and("lockedUntil").lte(now)),
+            takeOver, IdempotencyRecord.class).getModifiedCount() > 0;
+        if (claimed) {
+            log.warn("Taking over idempotency key {} whose lease expired", id);
+            return null;
+        }
+        conflicts.increment();
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "A request with this " + HEADER + " is still in progress");
+    }
+
+    private StoredResponse run(String id, String fingerprint, Supplier<ResponseEntity<PointTransaction>> request) {
+        ResponseEntity<PointTransaction> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            mongoTemplate.remove(owned(id), IdempotencyRecord.class);
+            throw e;
+        }
+
+        StoredResponse stored = new StoredResponse(fingerprint, response.getStatusCode().value(), response.getBody());
+        responses.put(id, stored);
+        long completed = mongoTemplate.updateFirst(owned(id), new Update()
+            .set("status", IdempotencyRecord.Status.COMPLETED)
+            .set("responseStatus", stored.status())
+            .set("response", stored.body())
+            .unset("owner")
+            .unset("lockedUntil"), IdempotencyRecord.class).getModifiedCount();
+        if (completed == 0) {
+            log.warn("Idempotency key {} was taken over by another node while its request ran", id);
+        }
+        return stored;
+    }
+
+    private Query owned(String id) {
+        return query(where("_id").is(id)
+            .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+            .and("owner").is(nodeId));
+    }
+
+    /**
+     * Extends the leases of the requests this node is still running.
+     */
+    @Scheduled(fixedDelayString = "${points.idempotency.renew-ms:20000}")
+    public void renewLeases() {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        mongoTemplate.updateMulti(query(where("_id").in(inFlight.keySet())
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("owner").is(nodeId)),
+            new Update().set("lockedUntil", new Date(now.getTime() + leaseMs)), IdempotencyRecord.class);
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> first) {
+        try {
+            return first.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the original request", e);
+        } catch (TimeoutException e) {
+            conflicts.increment();
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A request with this " + HEADER + " is still in progress");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private ResponseEntity<PointTransaction> replay(StoredResponse stored, String fingerprint) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                HEADER + " was already used for a different request");
+        }
+        replayed.increment();
+        return toResponse(stored, true);
+    }
+
+    private static ResponseEntity<PointTransaction> toResponse(StoredResponse stored, boolean replayed) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(stored.status());
+        if (replayed) {
+            response.header(REPLAYED_HEADER, "true");
+        }
+        return response.body(stored.body());
+    }
+}
@@ -0,0 +1,275 @@
+package com.loyalty.service;
+
+import com.loyalty.model.PointBalance;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory points leaderboard over the {@link PointBalance} checkpoints, ranked by balance with
+ * ties broken by user id.
+ * <p>
+ * {@link PointBalanceService} reports every balance change made on this node, so top-N and rank
+ * lookups are O(log n) reads of a {@link RankedSkipList} that never reach Mongo. The ranking is
+ * loaded from the checkpoints once the application is ready, after checkpoints have been rebuilt for
+ * any user who only has ledger rows (see {@link PointBalanceService#backfill}), and every
+ * {@code points.leaderboard.verify-ms} it is compared with them again: that picks up changes made
+ * by other nodes and corrects any drift, counted in {@code points.leaderboard.corrections}.
+ */
+@Service
+@Slf4j
+public class LeaderboardService {
+    private final MongoTemplate mongoTemplate;
+    private final PointBalanceService pointBalanceService;
+    private final boolean enabled;
+    private final int backfillBatch;
+    private final int maxLimit;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Changed together under the write lock; verify() also reads scores without it
+    private volatile RankedSkipList ranking = new RankedSkipList();
+    private volatile Map<String, Long> scores = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private final Counter corrections;
+    private final Executor loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread t = new Thread(runnable, "leaderboard-load");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Lazy: PointBalanceService reports to this service, so it cannot be built first
+    public LeaderboardService(MongoTemplate mongoTemplate,
+                              @Lazy PointBalanceService pointBalanceService,
+                              @Value("${points.leaderboard.enabled:true}") boolean enabled,
+                              @Value("${points.leaderboard.max-limit:100}") int maxLimit,
+                              @Value("${points.leaderboard.backfill-batch:500}") int backfillBatch,
+                              MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.pointBalanceService = pointBalanceService;
+        this.enabled = enabled;
+        this.maxLimit = maxLimit;
+        this.backfillBatch = backfillBatch;
+
+        Gauge.builder("points.leaderboard.users", this, LeaderboardService::size)
+            .description("Users ranked on this node's leaderboard")
+            .register(meterRegistry);
+        this.corrections = Counter.builder("points.leaderboard.corrections")
+            .description("Leaderboard entries corrected by the consistency check")
+            .register(meterRegistry);
+    }
+
+    public record Entry(int rank, String userId, long points) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            loader.execute(() -> {
+                try {
+                    load();
+                } catch (RuntimeException e) {
+                    log.error("Leaderboard could not be loaded, retrying at the next consistency check", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces the ranking with a fresh one built from every balance checkpoint, first creating the
+     * checkpoints missing for users with ledger rows. Changes reported while it is being built are
+     * lost with the old ranking until the next consistency check.
+     */
+    public void load() {
+        long start = System.currentTimeMillis();
+        int backfilled = pointBalanceService.backfill(backfillBatch);
+        if (backfilled > 0) {
+            log.info("Rebuilt {} missing balance checkpoints from the ledger", backfilled);
+        }
+        RankedSkipList freshRanking = new RankedSkipList();
+        Map<String, Long> freshScores = new ConcurrentHashMap<>();
+        try (Stream<PointBalance> balances = mongoTemplate.stream(balancesQuery(), PointBalance.class)) {
+            balances.forEach(balance -> {
+                freshScores.put(balance.getUserId(), balance.getBalance());
+                freshRanking.insert(balance.getUserId(), balance.getBalance());
+            });
+        }
+
+        lock.writeLock().lock();
+        try {
+            ranking = freshRanking;
+            scores = freshScores;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        loaded = true;
+        log.info("Leaderboard loaded with {} users in {} ms", freshRanking.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Moves a ranked user by {@code delta}. A user not ranked yet is ranked with the balance of their
+     * checkpoint, which the caller has just updated, since the absolute balance is not known here.
+     */
+    public void adjust(String userId, long delta) {
+        if (!enabled || delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Long current = scores.get(userId);
+            if (current != null) {
+                move(userId, current, current + delta);
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        PointBalance checkpoint = mongoTemplate.findById(userId, PointBalance.class);
+        if (checkpoint != null) {
+            set(userId, checkpoint.getBalance());
+        }
+    }
+
+    public void set(String userId, long balance) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            move(userId, scores.get(userId), balance);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void move(String userId, Long from, long to) {
+        if (from != null) {
+            if (from == to) {
+                return;
+            }
+            ranking.delete(userId, from);
+        }
+        ranking.insert(userId, to);
+        scores.put(userId, to);
+    }
+
+    public List<Entry> top(int limit) {
+        checkLoaded();
+        int n = Math.max(1, Math.min(limit, maxLimit));
+        lock.readLock().lock();
+        try {
+            return ranking.top(n).stream()
+                .map(ranked -> new Entry(ranked.rank(), ranked.member(), ranked.score()))
+                .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Entry> rankOf(String userId) {
+        checkLoaded();
+        lock.readLock().lock();
+        try {
+            Long score = scores.get(userId);
+            if (score == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new Entry(ranking.rank(userId, score), userId, score));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ranking.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compares every ranked balance with its checkpoint and corrects the ones that differ. A
+     * checkpoint that changes while the scan runs may be corrected to a slightly older value, which
+     * the next change or check puts right.
+     */
+    @Scheduled(fixedDelayString = "${points.leaderboard.verify-ms:300000}",
+               initialDelayString = "${points.leaderboard.verify-ms:300000}")
+    public void verify() {
+        if (!enabled) {
+            return;
+        }
+        if (!loaded) {
+            load();
+            return;
+        }
+
+        Set<String> seen = new HashSet<>();
+        int corrected = 0;
+        try (Stream<PointBalance> balances = mongoTemplate.stream(balancesQuery(), PointBalance.class)) {
+            for (PointBalance balance : (Iterable<PointBalance>) balances::iterator) {
+                seen.add(balance.getUserId());
+                Long ranked = scores.get(balance.getUserId());
+                if (ranked == null || ranked.longValue() != balance.getBalance()) {
+                    set(balance.getUserId(), balance.getBalance());
+                    corrected++;
+                }
+            }
+        }
+        for (String userId : scores.keySet()) {
+            if (!seen.contains(userId)) {
+                remove(userId);
+                corrected++;
+            }
+        }
+        if (corrected > 0) {
+            corrections.increment(corrected);
+            log.info("Leaderboard consistency check corrected {} of {} users", corrected, seen.size());
+        }
+    }
+
+    private void remove(String userId) {
+        lock.writeLock().lock();
+        try {
+            Long score = scores.remove(userId);
+            if (score != null) {
+                ranking.delete(userId, score);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkLoaded() {
+        if (!enabled || !loaded) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Leaderboard is not available yet");
+        }
+    }
+
+    private static Query balancesQuery() {
+        Query query = new Query();
+        query.fields().include("balance");
+        return query;
+    }
+}
@@ -0,0 +1,133 @@
+package com.loyalty.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs ledger mutations on a fixed set of single-threaded lanes, picked by hashing the user id.
+ * <p>
+ * All writes for one user are serialised on one lane, so they never contend with each other in
+ * Mongo, while different users are spread over all lanes. When {@code points.lanes.enabled} is
+ * false the work simply runs on the calling thread.
+ */
+@Component
+@Slf4j
+public class LedgerLaneExecutor {
+    private final boolean enabled;
+    private final Lane[] lanes;
+    private final Counter rejected;
+
+    public LedgerLaneExecutor(@Value("${points.lanes.enabled:false}") boolean enabled,
+                              @Value("${points.lanes.count:0}") int count,
+                              @Value("${points.lanes.queue-capacity:10000}") int queueCapacity,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        int laneCount = count > 0 ? count : Runtime.getRuntime().availableProcessors();
+        this.lanes = new Lane[enabled ? laneCount : 0];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, queueCapacity);
+            Gauge.builder("ledger.lane.queue.depth", lanes[i].executor, e -> e.getQueue().size())
+                .tag("lane", String.valueOf(i))
+                .description("Ledger mutations waiting on the lane")
+                .register(meterRegistry);
+            FunctionCounter.builder("ledger.lane.busy", lanes[i].busyNanos, n -> n.get() / 1e9)
+                .tag("lane", String.valueOf(i))
+                .baseUnit("seconds")
+                .description("Time the lane spent running mutations; its rate is the lane utilisation")
+                .register(meterRegistry);
+        }
+        this.rejected = Counter.builder("ledger.lane.rejected")
+            .description("Ledger mutations rejected because the lane queue was full")
+            .register(meterRegistry);
+        if (enabled) {
+            log.info("Ledger lanes enabled: {} lanes, queue capacity {}", laneCount, queueCapacity);
+        }
+    }
+
+    public <T> T execute(String userId, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        Lane lane = laneFor(userId);
+        if (Thread.currentThread() == lane.thread) {
+            // Already serialised on this user's lane
+            return work.get();
+        }
+
+        Future<T> future;
+        try {
+            future = lane.executor.submit(() -> lane.run(work));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ledger lane", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Lane laneFor(String userId) {
+        int h = userId.hashCode();
+        return lanes[Math.floorMod(h ^ (h >>> 16), lanes.length)];
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        for (Lane lane : lanes) {
+            lane.executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final class Lane {
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong busyNanos = new AtomicLong();
+        private volatile Thread thread;
+
+        private Lane(int index, int queueCapacity) {
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread t = new Thread(runnable, "ledger-lane-" + index);
+                    t.setDaemon(true);
+                    thread = t;
+                    return t;
+                });
+        }
+
+        private <T> T run(Supplier<T> work) {
+            long start = System.nanoTime();
+            try {
+                return work.get();
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+}
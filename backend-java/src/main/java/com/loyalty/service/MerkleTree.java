@@ -0,0 +1,100 @@
+package com.loyalty.service;
+
+import com.loyalty.model.ReceiptProof.ProofStep;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Binary SHA-256 Merkle tree over receipt leaves.
+ * <p>
+ * Leaves and inner nodes are hashed with distinct prefixes (0x00 / 0x01) so an inner node can
+ * never be passed off as a leaf. An odd node at the end of a level is paired with itself.
+ */
+public final class MerkleTree {
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final List<byte[][]> levels;
+
+    private MerkleTree(List<byte[][]> levels) {
+        this.levels = levels;
+    }
+
+    public static MerkleTree build(List<byte[]> leafHashes) {
+        if (leafHashes.isEmpty()) {
+            throw new IllegalArgumentException("Cannot build a Merkle tree without leaves");
+        }
+        List<byte[][]> levels = new ArrayList<>();
+        byte[][] level = leafHashes.toArray(new byte[0][]);
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parent.length; i++) {
+                byte[] left = level[2 * i];
+                byte[] right = 2 * i + 1 < level.length ? level[2 * i + 1] : left;
+                parent[i] = node(left, right);
+            }
+            levels.add(parent);
+            level = parent;
+        }
+        return new MerkleTree(levels);
+    }
+
+    public byte[] root() {
+        return levels.get(levels.size() - 1)[0];
+    }
+
+    public List<ProofStep> proof(int leafIndex) {
+        List<ProofStep> steps = new ArrayList<>();
+        int index = leafIndex;
+        for (int depth = 0; depth < levels.size() - 1; depth++) {
+            byte[][] level = levels.get(depth);
+            boolean isRight = (index & 1) == 1;
+            int sibling = isRight ? index - 1 : Math.min(index + 1, level.length - 1);
+            steps.add(new ProofStep(HEX.formatHex(level[sibling]), isRight));
+            index >>= 1;
+        }
+        return steps;
+    }
+
+    public static boolean verify(byte[] leafHash, List<ProofStep> proof, byte[] root) {
+        byte[] current = leafHash;
+        for (ProofStep step : proof) {
+            byte[] sibling = HEX.parseHex(step.getHash());
+            current = step.isLeft() ? node(sibling, current) : node(current, sibling);
+        }
+        return MessageDigest.isEqual(current, root);
+    }
+
+    public static byte[] leaf(byte[] data) {
+        return hash((byte) 0x00, data);
+    }
+
+    private static byte[] node(byte[] left, byte[] right) {
+        byte[] joined = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, joined, left.length, right.length);
+        return hash((byte) 0x01, joined);
+    }
+
+    private static byte[] hash(byte prefix, byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(prefix);
+            return digest.digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        return HEX.formatHex(bytes);
+    }
+
+    public static byte[] fromHex(String hex) {
+        return HEX.parseHex(hex);
+    }
+}
@@ -0,0 +1,222 @@
+package com.loyalty.service;
+
+import com.loyalty.repository.MongoIndexCatalog;
+import com.loyalty.repository.MongoIndexCatalog.ManagedIndex;
+import com.loyalty.repository.MongoIndexCatalog.QueryProbe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Brings the live indexes in line with {@link MongoIndexCatalog} once the application is ready,
+ * on a background thread so startup never waits on an index build.
+ * <p>
+ * Missing indexes are created and indexes whose definition changed are rebuilt. Indexes that are
+ * not in the catalogue are reported, and only dropped when {@code points.indexes.drop-undeclared}
+ * is set. Afterwards every catalogued query is explained and any collection scan is logged and
+ * counted in {@code mongo.indexes.collscan.queries}.
+ */
+@Component
+@Slf4j
+public class MongoIndexReconciler {
+    private static final String ID_INDEX = "_id_";
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final boolean dropUndeclared;
+    private final boolean verifyPlans;
+    private final AtomicInteger collectionScans = new AtomicInteger();
+    private final Counter failures;
+    private final Executor executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread t = new Thread(runnable, "index-reconciler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MongoIndexReconciler(MongoTemplate mongoTemplate,
+                                @Value("${points.indexes.reconcile:true}") boolean enabled,
+                                @Value("${points.indexes.drop-undeclared:false}") boolean dropUndeclared,
+                                @Value("${points.indexes.verify-plans:true}") boolean verifyPlans,
+                                MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.dropUndeclared = dropUndeclared;
+        this.verifyPlans = verifyPlans;
+
+        Gauge.builder("mongo.indexes.collscan.queries", collectionScans, AtomicInteger::get)
+            .description("Catalogued queries whose winning plan is a collection scan")
+            .register(meterRegistry);
+        this.failures = Counter.builder("mongo.indexes.reconcile.failures")
+            .description("Index creations or drops that failed during reconciliation")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            executor.execute(this::run);
+        }
+    }
+
+    private void run() {
+        try {
+            reconcile();
+            if (verifyPlans) {
+                verifyPlans();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Index reconciliation did not complete: {}", e.getMessage());
+        }
+    }
+
+    public void reconcile() {
+        Map<Class<?>, List<ManagedIndex>> byEntity = MongoIndexCatalog.indexes().stream()
+            .collect(Collectors.groupingBy(ManagedIndex::entity, LinkedHashMap::new, Collectors.toList()));
+
+        byEntity.forEach((entity, declared) -> {
+            IndexOperations indexOps = mongoTemplate.indexOps(entity);
+            Map<String, IndexInfo> existing = indexOps.getIndexInfo().stream()
+                .collect(Collectors.toMap(IndexInfo::getName, info -> info));
+            String collection = mongoTemplate.getCollectionName(entity);
+
+            for (ManagedIndex index : declared) {
+                String name = index.definition().getIndexOptions().getString("name");
+                IndexInfo current = existing.get(name);
+                try {
+                    if (current != null && matches(current, index)) {
+                        continue;
+                    }
+                    if (current != null) {
+                        log.warn("Index {}.{} changed definition, rebuilding it", collection, name);
+                        indexOps.dropIndex(name);
+                    }
+                    long start = System.currentTimeMillis();
+                    indexOps.ensureIndex(index.definition());
+                    log.info("Created index {}.{} in {} ms", collection, name, System.currentTimeMillis() - start);
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    log.error("Could not create index {}.{}: {}", collection, name, e.getMessage());
+                }
+            }
+
+            Set<String> declaredNames = declared.stream()
+                .map(index -> index.definition().getIndexOptions().getString("name"))
+                .collect(Collectors.toSet());
+            for (String name : existing.keySet()) {
+                if (ID_INDEX.equals(name) || declaredNames.contains(name)) {
+                    continue;
+                }
+                if (!dropUndeclared) {
+                    log.warn("Index {}.{} is not declared in MongoIndexCatalog", collection, name);
+                    continue;
+                }
+                try {
+                    indexOps.dropIndex(name);
+                    log.info("Dropped undeclared index {}.{}", collection, name);
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    log.error("Could not drop index {}.{}: {}", collection, name, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Explains every catalogued query and returns those whose winning plan scans the collection.
+     */
+    public List<String> verifyPlans() {
+        List<String> scans = new ArrayList<>();
+        for (QueryProbe probe : MongoIndexCatalog.probes()) {
+            String collection = mongoTemplate.getCollectionName(probe.entity());
+            if (scansCollection(collection, probe.filter(), probe.sort())) {
+                scans.add(probe.query());
+                log.error("{} does a collection scan on {}: {}", probe.query(), collection, probe.filter().toJson());
+            }
+        }
+        collectionScans.set(scans.size());
+        if (scans.isEmpty()) {
+            log.info("All {} catalogued queries use an index", MongoIndexCatalog.probes().size());
+        }
+        return scans;
+    }
+
+    /**
+     * Whether the winning plan for this filter and sort is, or contains, a collection scan.
+     */
+    public boolean scansCollection(String collection, Document filter, Document sort) {
+        Document explain = mongoTemplate.getCollection(collection)
+            .find(filter)
+            .sort(sort)
+            .limit(1)
+            .explain();
+        return containsStage(explain.get("queryPlanner", Document.class).get("winningPlan"), "COLLSCAN");
+    }
+
+    private static boolean matches(IndexInfo current, ManagedIndex index) {
+        Document keys = index.definition().getIndexKeys();
+        List<IndexField> fields = current.getIndexFields();
+        if (fields.size() != keys.size()) {
+            return false;
+        }
+        int i = 0;
+        for (Map.Entry<String, Object> key : keys.entrySet()) {
+            IndexField field = fields.get(i++);
+            Direction direction = ((Number) key.getValue()).intValue() > 0 ? Direction.ASC : Direction.DESC;
+            if (!field.getKey().equals(key.getKey()) || field.getDirection() != direction) {
+                return false;
+            }
+        }
+
+        Document options = index.definition().getIndexOptions();
+        if (current.isUnique() != options.getBoolean("unique", false)) {
+            return false;
+        }
+        Object expireAfter = options.get("expireAfterSeconds");
+        Long currentExpireAfter = current.getExpireAfter().map(Duration::getSeconds).orElse(null);
+        if (!Objects.equals(expireAfter == null ? null : ((Number) expireAfter).longValue(), currentExpireAfter)) {
+            return false;
+        }
+        Object partial = options.get("partialFilterExpression");
+        String currentPartial = current.getPartialFilterExpression();
+        if (partial == null || currentPartial == null) {
+            return partial == null && currentPartial == null;
+        }
+        return Document.parse(currentPartial).equals(partial);
+    }
+
+    private static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document document) {
+            if (stage.equals(document.get("stage"))) {
+                return true;
+            }
+            return document.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+}
@@ -0,0 +1,354 @@
+package com.loyalty.service;
+
+import com.loyalty.model.PointBalance;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.repository.PointBalanceRepository;
+import com.loyalty.repository.PointTransactionRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Keeps {@link PointBalance} checkpoints in step with the point ledger.
+ * <p>
+ * Every successful ledger write is applied with a single conditional {@code $inc} that also lists
+ * the row on the checkpoint, so a balance read is one document lookup plus the (normally empty)
+ * tail of rows after the watermark that are not listed yet. Applying a row that a rebuild already
+ * folded in is a no-op. A missing snapshot, or a tail row or reservation left unapplied longer
+ * than {@code points.balance.stale-after-ms}, triggers a rebuild from the full ledger.
+ * <p>
+ * Debits are reserved against the checkpoint with a conditional update guarded by
+ * {@code balance >= amount}, so concurrent requests cannot overdraw an account on any node.
+ * Pending TRADE/PAY rows and gift REDEEM holds keep their amount until they are finalised or released.
+ * <p>
+ * The watermark trails the clock by {@code points.balance.watermark-lag-ms}; reads, and writes to
+ * checkpoints listing more than {@code points.balance.compact-after} rows, move it forward and drop
+ * the rows it now covers. The updates themselves live in {@link BalanceCheckpoints}.
+ * <p>
+ * Every change to a checkpoint made here is also reported to the {@link LeaderboardService}.
+ * <p>
+ * Reads are timed as {@code points.balance.read} by the path they took (snapshot, tail or rebuild),
+ * and {@code points.balance.fold.rows} records how many ledger rows each fold had to sum.
+ */
+@Service
+@Slf4j
+public class PointBalanceService {
+    private final PointBalanceRepository balanceRepository;
+    private final PointTransactionRepository transactionRepository;
+    private final MongoTemplate mongoTemplate;
+    private final LeaderboardService leaderboardService;
+
+    @Value("${points.balance.stale-after-ms:30000}")
+    private long staleAfterMs;
+
+    @Value("${points.balance.watermark-lag-ms:5000}")
+    private long watermarkLagMs;
+
+    @Value("${points.balance.compact-after:64}")
+    private int compactAfter;
+
+    private final BalanceCheckpoints.Meters meters;
+
+    public PointBalanceService(PointBalanceRepository balanceRepository,
+                               PointTransactionRepository transactionRepository,
+                               MongoTemplate mongoTemplate,
+                               LeaderboardService leaderboardService,
+                               MeterRegistry meterRegistry) {
+        this.balanceRepository = balanceRepository;
+        this.transactionRepository = transactionRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.leaderboardService = leaderboardService;
+
+        this.meters = new BalanceCheckpoints.Meters(meterRegistry);
+    }
+
+    public Long getBalance(String userId) {
+        long start = System.nanoTime();
+        PointBalance snapshot = balanceRepository.findById(userId).orElse(null);
+        if (snapshot == null) {
+            return timed(meters.rebuildReads, start, rebuild(userId).getBalance());
+        }
+
+        List<PointTransaction> rows = transactionRepository
+            .findBalanceTransactionAmountsByUserIdAfter(userId, snapshot.getLastTimestamp());
+        BalanceCheckpoints.Tail tail = BalanceCheckpoints.tail(snapshot, rows, watermarkLagMs, staleAfterMs);
+        if (tail.stale()) {
+            log.warn("Balance snapshot for {} has {} unapplied rows, rebuilding", userId, tail.unapplied().size());
+            return timed(meters.rebuildReads, start, rebuild(userId).getBalance());
+        }
+        compact(snapshot, tail);
+        if (tail.unapplied().isEmpty()) {
+            return timed(meters.snapshotReads, start, snapshot.getBalance());
+        }
+        meters.tailRows.record(tail.unapplied().size());
+        return timed(meters.tailReads, start, snapshot.getBalance() + fold(tail.unapplied()));
+    }
+
+    private static Long timed(Timer timer, long start, Long balance) {
+        BalanceCheckpoints.Meters.record(timer, start);
+        return balance;
+    }
+
+    /**
+     * Folds a written row into the checkpoint, unless it already is.
+     */
+    public void apply(PointTransaction transaction) {
+        PointBalance updated = mongoTemplate.findAndModify(
+            BalanceCheckpoints.listedIds(BalanceCheckpoints.unapplied(transaction)),
+            BalanceCheckpoints.apply(transaction), FindAndModifyOptions.options().returnNew(true), PointBalance.class);
+        if (updated != null) {
+            leaderboardService.adjust(transaction.getUserId(), signedAmount(transaction));
+            compactIfOvergrown(updated);
+        } else if (!mongoTemplate.exists(BalanceCheckpoints.checkpoint(transaction.getUserId()), PointBalance.class)) {
+            // No checkpoint yet: the rebuild folds the row that was just written
+            rebuild(transaction.getUserId());
+        }
+    }
+
+    /**
+     * Applies many credited rows at once with one unordered bulk of per-user updates. A user whose
+     * update did not match, because a rebuild or an earlier attempt already folded some of the rows
+     * in, has the rest applied one by one; users without a checkpoint get one rebuilt from the ledger,
+     * which already holds their rows.
+     */
+    public void applyAll(List<PointTransaction> transactions) {
+        Map<String, List<PointTransaction>> byUser = transactions.stream()
+            .collect(Collectors.groupingBy(PointTransaction::getUserId));
+        if (byUser.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PointBalance.class);
+        byUser.forEach((userId, rows) ->
+            bulk.updateOne(BalanceCheckpoints.unapplied(userId, rows), BalanceCheckpoints.applyAll(rows)));
+        BulkWriteResult result = bulk.execute();
+
+        List<String> userIds = new ArrayList<>(byUser.keySet());
+        if (result.getMatchedCount() == byUser.size()) {
+            byUser.forEach((userId, rows) -> leaderboardService.adjust(userId, fold(rows)));
+        } else {
+            applyRemaining(byUser);
+        }
+        mongoTemplate.find(BalanceCheckpoints.overgrown(userIds, compactAfter), PointBalance.class)
+            .forEach(overgrown -> compact(overgrown.getUserId()));
+    }
+
+    private void applyRemaining(Map<String, List<PointTransaction>> byUser) {
+        Set<String> withoutCheckpoint = new HashSet<>(byUser.keySet());
+        for (PointBalance checkpoint : mongoTemplate.find(
+                query(where("_id").in(byUser.keySet())), PointBalance.class)) {
+            withoutCheckpoint.remove(checkpoint.getUserId());
+            Set<String> listed = new HashSet<>();
+            if (checkpoint.getApplied() != null) {
+                checkpoint.getApplied().forEach(row -> listed.add(row.getTransactionId()));
+            }
+            List<PointTransaction> remaining = byUser.get(checkpoint.getUserId()).stream()
+                .filter(row -> row.getTimestamp().after(checkpoint.getLastTimestamp()) && !listed.contains(row.getId()))
+                .toList();
+            if (remaining.isEmpty()) {
+                // Folded in by the bulk or a rebuild; either way the checkpoint has the balance
+                leaderboardService.set(checkpoint.getUserId(), checkpoint.getBalance());
+            } else {
+                remaining.forEach(this::apply);
+            }
+        }
+        withoutCheckpoint.forEach(this::rebuild);
+    }
+
+    /**
+     * Reserves the amount of a debit row before it is written. The row must already carry its id
+     * and timestamp so the checkpoint lists it once it lands in the ledger.
+     *
+     * @throws IllegalStateException if the balance does not cover the debit
+     */
+    public void debit(PointTransaction transaction) {
+        long amount = -signedAmount(transaction);
+        if (tryDebit(transaction, amount)) {
+            return;
+        }
+        // The guard only sees applied rows: let a missing or stale checkpoint be rebuilt, then retry once
+        if (getBalance(transaction.getUserId()) >= amount && tryDebit(transaction, amount)) {
+            return;
+        }
+        throw new IllegalStateException("Insufficient points balance");
+    }
+
+    /**
+     * Returns a reserved debit to the balance, for rows that failed or were never written. Does nothing
+     * if the reservation is already gone, e.g. dropped by a rebuild that no longer counted the row.
+     */
+    public void release(PointTransaction transaction) {
+        UpdateResult result = mongoTemplate.updateFirst(BalanceCheckpoints.reserved(transaction),
+            BalanceCheckpoints.release(transaction), PointBalance.class);
+        if (result.getModifiedCount() > 0) {
+            leaderboardService.adjust(transaction.getUserId(), -signedAmount(transaction));
+        }
+    }
+
+    /**
+     * Records that a hold succeeded, so the checkpoint stops listing it once the watermark covers it.
+     */
+    public void confirm(PointTransaction transaction) {
+        mongoTemplate.updateFirst(BalanceCheckpoints.confirmed(transaction),
+            BalanceCheckpoints.confirm(transaction), PointBalance.class);
+    }
+
+    private boolean tryDebit(PointTransaction transaction, long amount) {
+        PointBalance updated = mongoTemplate.findAndModify(
+            BalanceCheckpoints.listedIds(BalanceCheckpoints.debitGuard(transaction, amount)),
+            BalanceCheckpoints.debit(transaction, amount), FindAndModifyOptions.options().returnNew(true), PointBalance.class);
+        if (updated == null) {
+            return false;
+        }
+        leaderboardService.adjust(transaction.getUserId(), -amount);
+        compactIfOvergrown(updated);
+        return true;
+    }
+
+    public PointBalance rebuild(String userId) {
+        long start = System.currentTimeMillis();
+        PointBalance current = balanceRepository.findById(userId).orElse(null);
+        List<PointTransaction> ledger = transactionRepository.findBalanceTransactionAmountsByUserId(userId);
+        meters.rebuildRows.record(ledger.size());
+        PointBalance rebuilt = BalanceCheckpoints.rebuilt(userId, ledger, current, start, watermarkLagMs, staleAfterMs);
+
+        if (current == null) {
+            try {
+                return ranked(mongoTemplate.insert(rebuilt));
+            } catch (DuplicateKeyException e) {
+                // Another request created the checkpoint first
+                return ranked(balanceRepository.findById(userId).orElse(rebuilt));
+            }
+        }
+
+        // Only replace the checkpoint if nothing was applied while the ledger was being folded
+        UpdateResult result = mongoTemplate.updateFirst(BalanceCheckpoints.unchanged(current),
+            BalanceCheckpoints.replace(rebuilt), PointBalance.class);
+        if (result.getModifiedCount() == 0) {
+            log.debug("Balance snapshot for {} changed during rebuild, keeping concurrent update", userId);
+            return ranked(balanceRepository.findById(userId).orElse(rebuilt));
+        }
+        return ranked(rebuilt);
+    }
+
+    /**
+     * Rebuilds a checkpoint for every user who has ledger rows but none yet, such as the users of a
+     * ledger written before checkpoints existed. Ledger user ids are read in index order and checked
+     * against the checkpoints {@code batch} at a time, so once every user has one this is a scan of
+     * the userId index and the checkpoint ids.
+     *
+     * @return the number of checkpoints created
+     */
+    public int backfill(int batch) {
+        Aggregation userIds = Aggregation.newAggregation(
+            Aggregation.sort(Sort.Direction.ASC, "userId"),
+            Aggregation.group("userId"));
+        int created = 0;
+        List<String> pending = new ArrayList<>(batch);
+        try (Stream<Document> rows = mongoTemplate.aggregateStream(userIds, PointTransaction.class, Document.class)) {
+            for (Document row : (Iterable<Document>) rows::iterator) {
+                if (row.getString("_id") != null) {
+                    pending.add(row.getString("_id"));
+                }
+                if (pending.size() >= batch) {
+                    created += backfillMissing(pending);
+                    pending.clear();
+                }
+            }
+        }
+        return created + backfillMissing(pending);
+    }
+
+    private int backfillMissing(List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        Query existing = query(where("_id").in(userIds));
+        existing.fields().include("_id");
+        Set<String> missing = new HashSet<>(userIds);
+        mongoTemplate.find(existing, PointBalance.class).forEach(checkpoint -> missing.remove(checkpoint.getUserId()));
+        missing.forEach(this::rebuild);
+        return missing.size();
+    }
+
+    private PointBalance ranked(PointBalance balance) {
+        leaderboardService.set(balance.getUserId(), balance.getBalance());
+        return balance;
+    }
+
+    private void compactIfOvergrown(PointBalance probed) {
+        if (BalanceCheckpoints.isOvergrown(probed, compactAfter)) {
+            compact(probed.getUserId());
+        }
+    }
+
+    private void compact(String userId) {
+        PointBalance checkpoint = balanceRepository.findById(userId).orElse(null);
+        if (checkpoint != null) {
+            compact(checkpoint, BalanceCheckpoints.tail(checkpoint,
+                transactionRepository.findBalanceTransactionAmountsByUserIdAfter(userId, checkpoint.getLastTimestamp()),
+                watermarkLagMs, staleAfterMs));
+        }
+    }
+
+    /**
+     * Moves the watermark over the settled part of the tail. Losing the race to another compaction or
+     * a rebuild is fine: the next read or write tries again.
+     */
+    private void compact(PointBalance checkpoint, BalanceCheckpoints.Tail tail) {
+        if (tail.watermark() != null) {
+            mongoTemplate.updateFirst(BalanceCheckpoints.compactable(checkpoint),
+                BalanceCheckpoints.compact(tail), PointBalance.class);
+        }
+    }
+
+    public Long verify(String userId) {
+        Long expected = fold(transactionRepository.findBalanceTransactionAmountsByUserId(userId));
+        Long actual = getBalance(userId);
+        if (!expected.equals(actual)) {
+            log.warn("Balance snapshot for {} drifted (snapshot={}, ledger={}), rebuilding", userId, actual, expected);
+            return rebuild(userId).getBalance();
+        }
+        return actual;
+    }
+
+    static long fold(List<PointTransaction> transactions) {
+        return transactions.stream().mapToLong(PointBalanceService::signedAmount).sum();
+    }
+
+    static long signedAmount(PointTransaction tx) {
+        switch (tx.getType()) {
+            case EARN:
+            case TRANSFER: // signed: negative for the sender, positive for the receiver
+                return tx.getAmount();
+            case REDEEM:
+            case PAY:
+            case TRADE:
+                return -tx.getAmount();
+            default:
+                return 0L;
+        }
+    }
+}
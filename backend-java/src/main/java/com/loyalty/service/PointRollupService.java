@@ -0,0 +1,292 @@
+package com.loyalty.service;
+
+import com.loyalty.model.PointRollup;
+import com.loyalty.model.PointTransaction;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Daily {@link PointRollup}s per user and globally, so analytics ranges never scan the ledger.
+ * <p>
+ * Every successful row is added to an in-memory delta for its user, day and type and for the global
+ * rollup of that day and type; deltas are written every {@code points.rollups.flush-ms} with one
+ * unordered bulk of {@code $inc} upserts, so the hot global documents see one update per flush
+ * instead of one per request. Rows are bucketed by their own timestamp, or by the settlement time
+ * when a hold is settled without it.
+ * <p>
+ * {@link #backfill} rebuilds whole closed days from the ledger, one day per worker, overwriting that
+ * day's rollups one by one. It also repairs deltas that were lost when a node stopped before flushing.
+ */
+@Service
+@Slf4j
+public class PointRollupService {
+    private final MongoTemplate mongoTemplate;
+    private final int backfillParallelism;
+    private final int maxRangeDays;
+    private final ConcurrentMap<RollupKey, Delta> pending = new ConcurrentHashMap<>();
+    private final Counter flushFailures;
+
+    public PointRollupService(MongoTemplate mongoTemplate,
+                              @Value("${points.rollups.backfill-parallelism:4}") int backfillParallelism,
+                              @Value("${points.rollups.max-range-days:366}") int maxRangeDays,
+                              MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.backfillParallelism = backfillParallelism;
+        this.maxRangeDays = maxRangeDays;
+
+        Gauge.builder("points.rollups.pending", pending, Map::size)
+            .description("Rollup deltas waiting for the next flush")
+            .register(meterRegistry);
+        this.flushFailures = Counter.builder("points.rollups.flush.failures")
+            .description("Rollup flushes that failed and were queued again")
+            .register(meterRegistry);
+    }
+
+    public record BackfillReport(LocalDate from, LocalDate to, int days, long rows, long rollups) {}
+
+    private record RollupKey(PointRollup.Scope scope, String userId, String day, PointTransaction.TransactionType type) {
+        String id() {
+            return scope == PointRollup.Scope.GLOBAL
+                ? "global:" + day + ':' + type
+                : "user:" + userId + ':' + day + ':' + type;
+        }
+    }
+
+    /**
+     * Running totals of one rollup. Only mutated inside {@link ConcurrentMap#compute} and
+     * {@link ConcurrentMap#merge}, and read once removed from the map.
+     */
+    private static final class Delta {
+        long count;
+        long credited;
+        long debited;
+
+        Delta add(long signedAmount) {
+            count++;
+            if (signedAmount >= 0) {
+                credited += signedAmount;
+            } else {
+                debited -= signedAmount;
+            }
+            return this;
+        }
+
+        Delta merge(Delta other) {
+            count += other.count;
+            credited += other.credited;
+            debited += other.debited;
+            return this;
+        }
+    }
+
+    public void record(PointTransaction transaction) {
+        if (transaction.getStatus() != PointTransaction.TransactionStatus.SUCCESS) {
+            return;
+        }
+        Date timestamp = transaction.getTimestamp() != null ? transaction.getTimestamp() : new Date();
+        String day = day(timestamp.toInstant());
+        long signedAmount = PointBalanceService.signedAmount(transaction);
+        add(new RollupKey(PointRollup.Scope.USER, transaction.getUserId(), day, transaction.getType()), signedAmount);
+        add(new RollupKey(PointRollup.Scope.GLOBAL, null, day, transaction.getType()), signedAmount);
+    }
+
+    private void add(RollupKey key, long signedAmount) {
+        pending.compute(key, (k, delta) -> (delta != null ? delta : new Delta()).add(signedAmount));
+    }
+
+    @Scheduled(fixedDelayString = "${points.rollups.flush-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<RollupKey> keys = new ArrayList<>();
+        List<Delta> deltas = new ArrayList<>();
+        for (RollupKey key : pending.keySet()) {
+            Delta delta = pending.remove(key);
+            if (delta != null) {
+                keys.add(key);
+                deltas.add(delta);
+            }
+        }
+
+        Date now = new Date();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PointRollup.class);
+        for (int i = 0; i < keys.size(); i++) {
+            RollupKey key = keys.get(i);
+            Delta delta = deltas.get(i);
+            bulk.upsert(query(where("_id").is(key.id())), new Update()
+                .setOnInsert("scope", key.scope())
+                .setOnInsert("userId", key.userId())
+                .setOnInsert("day", key.day())
+                .setOnInsert("type", key.type())
+                .inc("count", delta.count)
+                .inc("credited", delta.credited)
+                .inc("debited", delta.debited)
+                .set("updatedAt", now));
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // Unordered: only the failed upserts are missing
+            flushFailures.increment();
+            log.warn("{} of {} rollup updates failed, queueing them again", e.getErrors().size(), keys.size());
+            for (BulkWriteError error : e.getErrors()) {
+                pending.merge(keys.get(error.getIndex()), deltas.get(error.getIndex()), Delta::merge);
+            }
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            log.warn("Rollup flush of {} updates failed, queueing them again: {}", keys.size(), e.getMessage());
+            for (int i = 0; i < keys.size(); i++) {
+                pending.merge(keys.get(i), deltas.get(i), Delta::merge);
+            }
+        }
+    }
+
+    public List<PointRollup> userDaily(String userId, LocalDate from, LocalDate to, PointTransaction.TransactionType type) {
+        return find(PointRollup.Scope.USER, userId, from, to, type);
+    }
+
+    public List<PointRollup> globalDaily(LocalDate from, LocalDate to, PointTransaction.TransactionType type) {
+        return find(PointRollup.Scope.GLOBAL, null, from, to, type);
+    }
+
+    private List<PointRollup> find(PointRollup.Scope scope, String userId, LocalDate from, LocalDate to,
+                                   PointTransaction.TransactionType type) {
+        checkRange(from, to);
+        Criteria criteria = where("scope").is(scope).and("userId").is(userId)
+            .and("day").gte(from.toString()).lte(to.toString());
+        if (type != null) {
+            criteria.and("type").is(type);
+        }
+        return mongoTemplate.find(query(criteria).with(Sort.by("day", "type")), PointRollup.class);
+    }
+
+    /**
+     * Rebuilds the rollups of every day in the range from the ledger. Only closed days are accepted:
+     * today's rollups are still being incremented and would count rows twice.
+     */
+    public BackfillReport backfill(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        if (!to.isBefore(LocalDate.now(ZoneOffset.UTC))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only days before today (UTC) can be backfilled");
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(backfillParallelism, runnable -> {
+            Thread t = new Thread(runnable, "rollup-backfill-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<CompletableFuture<long[]>> days = from.datesUntil(to.plusDays(1))
+                .map(day -> CompletableFuture.supplyAsync(() -> backfillDay(day), workers))
+                .toList();
+            long rows = 0;
+            long rollups = 0;
+            for (CompletableFuture<long[]> day : days) {
+                long[] counts = day.join();
+                rows += counts[0];
+                rollups += counts[1];
+            }
+            log.info("Backfilled rollups from {} to {}: {} rows into {} rollups", from, to, rows, rollups);
+            return new BackfillReport(from, to, days.size(), rows, rollups);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private long[] backfillDay(LocalDate day) {
+        Instant start = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+        Query ledger = query(where("status").is(PointTransaction.TransactionStatus.SUCCESS)
+            .and("timestamp").gte(Date.from(start)).lt(Date.from(start.plus(1, ChronoUnit.DAYS))));
+        ledger.fields().include("userId", "type", "amount");
+
+        String dayKey = day.toString();
+        Map<RollupKey, Delta> totals = new HashMap<>();
+        long rows = 0;
+        try (Stream<PointTransaction> transactions = mongoTemplate.stream(ledger, PointTransaction.class)) {
+            for (PointTransaction tx : (Iterable<PointTransaction>) transactions::iterator) {
+                long signedAmount = PointBalanceService.signedAmount(tx);
+                totals.computeIfAbsent(new RollupKey(PointRollup.Scope.USER, tx.getUserId(), dayKey, tx.getType()),
+                    key -> new Delta()).add(signedAmount);
+                totals.computeIfAbsent(new RollupKey(PointRollup.Scope.GLOBAL, null, dayKey, tx.getType()),
+                    key -> new Delta()).add(signedAmount);
+                rows++;
+            }
+        }
+
+        if (totals.isEmpty()) {
+            return new long[] {rows, 0};
+        }
+        // Overwrite each rollup in place: a flush landing in between only bumps a document that is then
+        // set to the ledger totals, where removing the day first could drop it. SUCCESS rows never go
+        // away, so every rollup already stored for the day is among the ones written here.
+        Date now = new Date();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PointRollup.class);
+        totals.forEach((key, total) -> bulk.upsert(query(where("_id").is(key.id())), new Update()
+            .set("scope", key.scope())
+            .set("userId", key.userId())
+            .set("day", dayKey)
+            .set("type", key.type())
+            .set("count", total.count)
+            .set("credited", total.credited)
+            .set("debited", total.debited)
+            .set("updatedAt", now)));
+        bulk.execute();
+        return new long[] {rows, totals.size()};
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Range must not exceed " + maxRangeDays + " days");
+        }
+    }
+
+    private static String day(Instant instant) {
+        return LocalDate.ofInstant(instant, ZoneOffset.UTC).toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -1,42 +1,49 @@
 package com.loyalty.service;
 
+import com.loyalty.dto.HistoryPage;
 import com.loyalty.model.PointTransaction;
 import com.loyalty.repository.PointTransactionRepository;
 import com.loyalty.service.BlockchainService.BlockchainResponse;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class PointsService {
     private final PointTransactionRepository transactionRepository;
-    private final BlockchainService blockchainService;
+    private final PointBalanceService pointBalanceService;
+    private final LedgerLaneExecutor ledgerLanes;
+    private final BlockchainOutbox blockchainOutbox;
+    private final ReceiptAnchorService receiptAnchorService;
+    private final PointRollupService pointRollupService;
+    private final EarnGroupCommitter earnGroupCommitter;
+
+    @Value("${points.history.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${points.history.max-page-size:200}")
+    private int maxPageSize;
 
     public Long getBalance(String userId) {
-        List<PointTransaction> transactions = transactionRepository.findSuccessfulTransactionAmountsByUserId(userId);
-        return transactions.stream()
-            .mapToLong(tx -> {
-                switch (tx.getType()) {
-                    case EARN:
-                    case TRANSFER: // when receiving
-                        return tx.getAmount();
-                    case REDEEM:
-                    case PAY:
-                    case TRADE:
-                        return -tx.getAmount();
-                    default:
-                        return 0L;
-                }
-            })
-            .sum();
+        return pointBalanceService.getBalance(userId);
+    }
+
+    public Long verifyBalance(String userId) {
+        return pointBalanceService.verify(userId);
     }
 
-    @Transactional
     public PointTransaction earnPoints(String userId, Long amount, String description) {
         var transaction = new PointTransaction();
         transaction.setUserId(userId);
@@ -44,36 +51,25 @@ public class PointsService {
         transaction.setAmount(amount);
         transaction.setStatus(PointTransaction.TransactionStatus.SUCCESS);
         transaction.setDescription(description);
-        transaction.setTimestamp(new Date());
-        
-        return transactionRepository.save(transaction);
-    }
 
-    @Transactional
-    public PointTransaction redeemPoints(String userId, Long amount, String description) {
-        Long balance = getBalance(userId);
-        if (balance < amount) {
-            throw new IllegalStateException("Insufficient points balance");
+        if (earnGroupCommitter.isEnabled()) {
+            return earnGroupCommitter.commit(transaction);
         }
+        return credit(transaction);
+    }
 
+    public PointTransaction redeemPoints(String userId, Long amount, String description) {
         var transaction = new PointTransaction();
         transaction.setUserId(userId);
         transaction.setType(PointTransaction.TransactionType.REDEEM);
         transaction.setAmount(amount);
         transaction.setStatus(PointTransaction.TransactionStatus.SUCCESS);
         transaction.setDescription(description);
-        transaction.setTimestamp(new Date());
         
-        return transactionRepository.save(transaction);
+        return debit(transaction);
     }
 
-    @Transactional
     public PointTransaction transferPoints(String fromUserId, String toUserId, Long amount, String description) {
-        Long balance = getBalance(fromUserId);
-        if (balance < amount) {
-            throw new IllegalStateException("Insufficient points balance");
-        }
-
         // Deduct from sender
         var senderTx = new PointTransaction();
         senderTx.setUserId(fromUserId);
@@ -81,8 +77,7 @@ public class PointsService {
         senderTx.setAmount(-amount);
         senderTx.setStatus(PointTransaction.TransactionStatus.SUCCESS);
         senderTx.setDescription("Transfer to: " + toUserId + " - " + description);
-        senderTx.setTimestamp(new Date());
-        transactionRepository.save(senderTx);
+        senderTx = debit(senderTx);
 
         // Add to receiver
         var receiverTx = new PointTransaction();
@@ -91,69 +86,183 @@ public class PointsService {
         receiverTx.setAmount(amount);
         receiverTx.setStatus(PointTransaction.TransactionStatus.SUCCESS);
         receiverTx.setDescription("Transfer from: " + fromUserId + " - " + description);
-        receiverTx.setTimestamp(new Date());
         receiverTx.setReferenceId(senderTx.getId());
         
-        return transactionRepository.save(receiverTx);
+        return credit(receiverTx);
     }
 
-    @Transactional
+    /**
+     * Holds the amount and queues the blockchain call; the returned row stays PENDING until the
+     * outbox dispatcher settles it.
+     */
     public PointTransaction tradeOnBlockchain(String userId, Long amount) {
-        Long balance = getBalance(userId);
-        if (balance < amount) {
-            throw new IllegalStateException("Insufficient points balance");
-        }
-
-        // Create pending transaction
         var transaction = new PointTransaction();
         transaction.setUserId(userId);
         transaction.setType(PointTransaction.TransactionType.TRADE);
         transaction.setAmount(amount);
         transaction.setStatus(PointTransaction.TransactionStatus.PENDING);
-        transaction.setTimestamp(new Date());
-        transaction = transactionRepository.save(transaction);
+        transaction = debit(transaction);
 
-        // Call blockchain service
-        BlockchainResponse response = blockchainService.trade(transaction);
-        
-        // Update transaction status
-        transaction.setBlockchainTx(response.txHash());
-        transaction.setStatus("SUCCESS".equals(response.status()) 
-            ? PointTransaction.TransactionStatus.SUCCESS 
-            : PointTransaction.TransactionStatus.FAILED);
-        
-        return transactionRepository.save(transaction);
+        blockchainOutbox.enqueue(transaction);
+        return transaction;
     }
 
-    @Transactional
+    /**
+     * Holds the amount and queues the blockchain call; the returned row stays PENDING until the
+     * outbox dispatcher settles it.
+     */
     public PointTransaction payWithPoints(String userId, Long amount) {
-        Long balance = getBalance(userId);
-        if (balance < amount) {
-            throw new IllegalStateException("Insufficient points balance");
-        }
-
-        // Create pending transaction
         var transaction = new PointTransaction();
         transaction.setUserId(userId);
         transaction.setType(PointTransaction.TransactionType.PAY);
         transaction.setAmount(amount);
         transaction.setStatus(PointTransaction.TransactionStatus.PENDING);
-        transaction.setTimestamp(new Date());
-        transaction = transactionRepository.save(transaction);
+        transaction = debit(transaction);
 
-        // Call blockchain service
-        BlockchainResponse response = blockchainService.pay(transaction);
-        
-        // Update transaction status
+        blockchainOutbox.enqueue(transaction);
+        return transaction;
+    }
+
+    /**
+     * Holds the points for a gift redemption as a PENDING REDEEM row with the redemption's id;
+     * {@link #settleHold} later turns it into a SUCCESS row or releases it.
+     */
+    public PointTransaction holdForRedemption(String redemptionId, String userId, Long amount, String description) {
+        var transaction = new PointTransaction();
+        transaction.setId(redemptionId);
+        transaction.setUserId(userId);
+        transaction.setType(PointTransaction.TransactionType.REDEEM);
+        transaction.setAmount(amount);
+        transaction.setStatus(PointTransaction.TransactionStatus.PENDING);
+        transaction.setDescription(description);
+
+        return debit(transaction);
+    }
+
+    public PointTransaction settleHold(String transactionId, String userId, Long amount, boolean confirmed) {
+        var transaction = new PointTransaction();
+        transaction.setId(transactionId);
+        transaction.setUserId(userId);
+        transaction.setType(PointTransaction.TransactionType.REDEEM);
+        transaction.setAmount(amount);
+        transaction.setStatus(confirmed
+            ? PointTransaction.TransactionStatus.SUCCESS
+            : PointTransaction.TransactionStatus.FAILED);
+
+        return settle(transaction);
+    }
+
+    public PointTransaction settleBlockchainTransaction(PointTransaction transaction, BlockchainResponse response) {
         transaction.setBlockchainTx(response.txHash());
-        transaction.setStatus("SUCCESS".equals(response.status()) 
-            ? PointTransaction.TransactionStatus.SUCCESS 
+        transaction.setStatus("SUCCESS".equals(response.status())
+            ? PointTransaction.TransactionStatus.SUCCESS
             : PointTransaction.TransactionStatus.FAILED);
-        
-        return transactionRepository.save(transaction);
+
+        return settle(transaction);
+    }
+
+    private PointTransaction credit(PointTransaction transaction) {
+        return ledgerLanes.execute(transaction.getUserId(), () -> {
+            transaction.setTimestamp(new Date());
+            PointTransaction saved = transactionRepository.save(transaction);
+            pointBalanceService.apply(saved);
+            pointRollupService.record(saved);
+            receiptAnchorService.submit(saved);
+            return saved;
+        });
+    }
+
+    /**
+     * Reserves the debit against the balance checkpoint, then records the row. The reservation is
+     * released again if the row cannot be written.
+     */
+    private PointTransaction debit(PointTransaction transaction) {
+        return ledgerLanes.execute(transaction.getUserId(), () -> {
+            if (transaction.getId() == null) {
+                transaction.setId(new ObjectId().toHexString());
+            }
+            transaction.setTimestamp(new Date());
+            pointBalanceService.debit(transaction);
+            PointTransaction saved;
+            try {
+                saved = transactionRepository.insert(transaction);
+            } catch (RuntimeException e) {
+                pointBalanceService.release(transaction);
+                throw e;
+            }
+            pointRollupService.record(saved);
+            receiptAnchorService.submit(saved);
+            return saved;
+        });
+    }
+
+    /**
+     * Records the outcome of a pending row, releasing its hold if it failed. Only the first outcome
+     * counts, so a redelivered outbox event cannot release a hold twice.
+     */
+    private PointTransaction settle(PointTransaction transaction) {
+        return ledgerLanes.execute(transaction.getUserId(), () -> {
+            long settled = transactionRepository.settlePendingTransaction(
+                transaction.getId(), transaction.getStatus(), transaction.getBlockchainTx());
+            if (settled == 0) {
+                return transaction;
+            }
+            // Continue with the stored row: the caller's copy may lack its timestamp, which the receipt
+            // hash includes and the daily rollup buckets by, and the description returned to the caller
+            PointTransaction stored = transactionRepository.findById(transaction.getId()).orElse(transaction);
+            if (stored.getStatus() == PointTransaction.TransactionStatus.FAILED) {
+                pointBalanceService.release(stored);
+            } else {
+                pointBalanceService.confirm(stored);
+                pointRollupService.record(stored);
+                receiptAnchorService.submit(stored);
+            }
+            return stored;
+        });
     }
 
-    public List<PointTransaction> getTransactionHistory(String userId) {
-        return transactionRepository.findByUserIdOrderByTimestampDesc(userId);
+    public Optional<PointTransaction> getTransaction(String userId, String transactionId) {
+        return transactionRepository.findById(transactionId)
+            .filter(tx -> userId.equals(tx.getUserId()));
+    }
+
+    /**
+     * Returns one page of history, newest first. The cursor is the opaque token returned as
+     * {@code nextCursor} by the previous page, so each page is a single indexed range scan.
+     */
+    public HistoryPage getTransactionHistory(String userId,
+                                             String cursor,
+                                             Integer pageSize,
+                                             PointTransaction.TransactionType type,
+                                             PointTransaction.TransactionStatus status,
+                                             Date from,
+                                             Date to) {
+        int limit = pageSize == null ? defaultPageSize : Math.max(1, Math.min(pageSize, maxPageSize));
+        Date afterTimestamp = null;
+        String afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+                afterTimestamp = new Date(Long.parseLong(position[0]));
+                afterId = position[1];
+                if (!ObjectId.isValid(afterId)) {
+                    throw new IllegalArgumentException("Invalid id in cursor");
+                }
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid history cursor");
+            }
+        }
+
+        // Fetch one extra row to know whether another page exists
+        List<PointTransaction> rows = transactionRepository.findHistoryPage(
+            userId, afterTimestamp, afterId, type, status, from, to, limit + 1);
+        if (rows.size() <= limit) {
+            return new HistoryPage(rows, null);
+        }
+        List<PointTransaction> page = rows.subList(0, limit);
+        PointTransaction last = page.get(limit - 1);
+        String nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+            (last.getTimestamp().getTime() + ":" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        return new HistoryPage(new ArrayList<>(page), nextCursor);
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.loyalty.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Skip list of members ordered by score, highest first, ties by member. Every forward link also
+ * records how many positions it skips, so the rank of a member is summed on the way down and
+ * insert, delete and rank are all O(log n) expected; the top n are a walk of the bottom level.
+ * Not thread-safe.
+ */
+final class RankedSkipList {
+    private static final int MAX_LEVEL = 32;
+    private static final double P = 0.25;
+
+    private final Node head = new Node(null, 0L, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+
+    record Ranked(int rank, String member, long score) {}
+
+    private static final class Node {
+        final String member;
+        final long score;
+        final Node[] next;
+        final int[] span;
+
+        Node(String member, long score, int level) {
+            this.member = member;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+
+        boolean before(String member, long score) {
+            return this.score > score || (this.score == score && this.member.compareTo(member) < 0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void insert(String member, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && x.next[i].before(member, score)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+
+        Node node = new Node(member, score, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        // Links above the new node now skip one more position
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    boolean delete(String member, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].before(member, score)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        x = x.next[0];
+        if (x == null || x.score != score || !x.member.equals(member)) {
+            return false;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * The 1-based rank of the member with this score, or 0 if it is not in the list.
+     */
+    int rank(String member, long score) {
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null
+                    && (x.next[i].before(member, score) || (x.next[i].score == score && x.next[i].member.equals(member)))) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && x.score == score && x.member.equals(member)) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    List<Ranked> top(int limit) {
+        List<Ranked> top = new ArrayList<>(Math.min(limit, size));
+        Node x = head.next[0];
+        while (x != null && top.size() < limit) {
+            top.add(new Ranked(top.size() + 1, x.member, x.score));
+            x = x.next[0];
+        }
+        return top;
+    }
+
+    private static int randomLevel() {
+        int level = 1;
+        while (level < MAX_LEVEL && ThreadLocalRandom.current().nextDouble() < P) {
+            level++;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,199 @@
+package com.loyalty.service;
+
+import com.loyalty.model.PointBalance;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.repository.PointTransactionRepositoryCustomImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Non-blocking counterpart of {@link PointBalanceService} for the reactive points API. Queries,
+ * updates and rebuilt checkpoints come from {@link BalanceCheckpoints} and
+ * {@link PointTransactionRepositoryCustomImpl}, so requests served by either stack see one
+ * consistent balance; only the driver differs. Reads are recorded in the same
+ * {@code points.balance.read} and {@code points.balance.fold.rows} meters.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "points.reactive.enabled", havingValue = "true")
+public class ReactivePointBalanceService {
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final LeaderboardService leaderboardService;
+    private final long staleAfterMs;
+    private final long watermarkLagMs;
+    private final int compactAfter;
+    private final BalanceCheckpoints.Meters meters;
+
+    public ReactivePointBalanceService(ReactiveMongoTemplate mongoTemplate,
+                                       LeaderboardService leaderboardService,
+                                       @Value("${points.balance.stale-after-ms:30000}") long staleAfterMs,
+                                       @Value("${points.balance.watermark-lag-ms:5000}") long watermarkLagMs,
+                                       @Value("${points.balance.compact-after:64}") int compactAfter,
+                                       MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.leaderboardService = leaderboardService;
+        this.staleAfterMs = staleAfterMs;
+        this.watermarkLagMs = watermarkLagMs;
+        this.compactAfter = compactAfter;
+        this.meters = new BalanceCheckpoints.Meters(meterRegistry);
+    }
+
+    public Mono<Long> getBalance(String userId) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mongoTemplate.findById(userId, PointBalance.class)
+                .flatMap(snapshot -> tail(snapshot)
+                    .flatMap(tail -> {
+                        if (tail.stale()) {
+                            log.warn("Balance snapshot for {} has {} unapplied rows, rebuilding", userId, tail.unapplied().size());
+                            return timed(rebuild(userId).map(PointBalance::getBalance), meters.rebuildReads, start);
+                        }
+                        if (tail.unapplied().isEmpty()) {
+                            return compact(snapshot, tail)
+                                .then(timed(Mono.just(snapshot.getBalance()), meters.snapshotReads, start));
+                        }
+                        meters.tailRows.record(tail.unapplied().size());
+                        return compact(snapshot, tail).then(timed(
+                            Mono.just(snapshot.getBalance() + PointBalanceService.fold(tail.unapplied())), meters.tailReads, start));
+                    }))
+                .switchIfEmpty(Mono.defer(() ->
+                    timed(rebuild(userId).map(PointBalance::getBalance), meters.rebuildReads, start)));
+        });
+    }
+
+    private static Mono<Long> timed(Mono<Long> balance, Timer timer, long start) {
+        return balance.doOnNext(value -> BalanceCheckpoints.Meters.record(timer, start));
+    }
+
+    /**
+     * Folds a written row into the checkpoint, unless it already is.
+     */
+    public Mono<Void> apply(PointTransaction transaction) {
+        return mongoTemplate.findAndModify(
+                BalanceCheckpoints.listedIds(BalanceCheckpoints.unapplied(transaction)),
+                BalanceCheckpoints.apply(transaction), FindAndModifyOptions.options().returnNew(true), PointBalance.class)
+            .flatMap(updated -> {
+                leaderboardService.adjust(transaction.getUserId(), PointBalanceService.signedAmount(transaction));
+                return compactIfOvergrown(updated).thenReturn(true);
+            })
+            .switchIfEmpty(Mono.defer(() -> mongoTemplate.exists(
+                    BalanceCheckpoints.checkpoint(transaction.getUserId()), PointBalance.class)
+                // No checkpoint yet: the rebuild folds the row that was just written
+                .flatMap(exists -> exists ? Mono.just(true) : rebuild(transaction.getUserId()).thenReturn(true))))
+            .then();
+    }
+
+    /**
+     * Reserves the amount of a debit row before it is written, failing with
+     * {@link IllegalStateException} if the balance does not cover it.
+     */
+    public Mono<Void> debit(PointTransaction transaction) {
+        long amount = -PointBalanceService.signedAmount(transaction);
+        return tryDebit(transaction, amount)
+            .flatMap(reserved -> reserved
+                ? Mono.just(true)
+                // The guard only sees applied rows: let a missing or stale checkpoint be rebuilt, then retry once
+                : getBalance(transaction.getUserId())
+                    .flatMap(balance -> balance >= amount ? tryDebit(transaction, amount) : Mono.just(false)))
+            .flatMap(reserved -> reserved
+                ? Mono.<Void>empty()
+                : Mono.error(new IllegalStateException("Insufficient points balance")));
+    }
+
+    /**
+     * Returns a reserved debit to the balance, unless the reservation is already gone.
+     */
+    public Mono<Void> release(PointTransaction transaction) {
+        return mongoTemplate.updateFirst(BalanceCheckpoints.reserved(transaction),
+                BalanceCheckpoints.release(transaction), PointBalance.class)
+            .doOnNext(result -> {
+                if (result.getModifiedCount() > 0) {
+                    leaderboardService.adjust(transaction.getUserId(), -PointBalanceService.signedAmount(transaction));
+                }
+            })
+            .then();
+    }
+
+    private Mono<Boolean> tryDebit(PointTransaction transaction, long amount) {
+        return mongoTemplate.findAndModify(
+                BalanceCheckpoints.listedIds(BalanceCheckpoints.debitGuard(transaction, amount)),
+                BalanceCheckpoints.debit(transaction, amount), FindAndModifyOptions.options().returnNew(true), PointBalance.class)
+            .flatMap(updated -> {
+                leaderboardService.adjust(transaction.getUserId(), -amount);
+                return compactIfOvergrown(updated).thenReturn(true);
+            })
+            .defaultIfEmpty(false);
+    }
+
+    public Mono<PointBalance> rebuild(String userId) {
+        return Mono.defer(() -> {
+            long start = System.currentTimeMillis();
+            return mongoTemplate.findById(userId, PointBalance.class)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(current -> mongoTemplate.find(
+                        PointTransactionRepositoryCustomImpl.balanceQuery(userId), PointTransaction.class)
+                    .collectList()
+                    .flatMap(ledger -> store(userId, current.orElse(null), ledger, start)));
+        })
+            .doOnNext(balance -> leaderboardService.set(userId, balance.getBalance()));
+    }
+
+    private Mono<PointBalance> store(String userId, PointBalance current, List<PointTransaction> ledger, long start) {
+        meters.rebuildRows.record(ledger.size());
+        PointBalance rebuilt = BalanceCheckpoints.rebuilt(userId, ledger, current, start, watermarkLagMs, staleAfterMs);
+
+        if (current == null) {
+            return mongoTemplate.insert(rebuilt)
+                // Another request created the checkpoint first
+                .onErrorResume(DuplicateKeyException.class,
+                    e -> mongoTemplate.findById(userId, PointBalance.class).defaultIfEmpty(rebuilt));
+        }
+
+        // Only replace the checkpoint if nothing was applied while the ledger was being folded
+        return mongoTemplate.updateFirst(BalanceCheckpoints.unchanged(current),
+                BalanceCheckpoints.replace(rebuilt), PointBalance.class)
+            .flatMap(result -> {
+                if (result.getModifiedCount() == 0) {
+                    log.debug("Balance snapshot for {} changed during rebuild, keeping concurrent update", userId);
+                    return mongoTemplate.findById(userId, PointBalance.class).defaultIfEmpty(rebuilt);
+                }
+                return Mono.just(rebuilt);
+            });
+    }
+
+    private Mono<BalanceCheckpoints.Tail> tail(PointBalance checkpoint) {
+        return mongoTemplate.find(PointTransactionRepositoryCustomImpl.balanceAfterQuery(
+                    checkpoint.getUserId(), checkpoint.getLastTimestamp()), PointTransaction.class)
+            .collectList()
+            .map(rows -> BalanceCheckpoints.tail(checkpoint, rows, watermarkLagMs, staleAfterMs));
+    }
+
+    private Mono<Void> compactIfOvergrown(PointBalance probed) {
+        if (!BalanceCheckpoints.isOvergrown(probed, compactAfter)) {
+            return Mono.empty();
+        }
+        return mongoTemplate.findById(probed.getUserId(), PointBalance.class)
+            .flatMap(checkpoint -> tail(checkpoint).flatMap(tail -> compact(checkpoint, tail)));
+    }
+
+    private Mono<Void> compact(PointBalance checkpoint, BalanceCheckpoints.Tail tail) {
+        if (tail.watermark() == null) {
+            return Mono.empty();
+        }
+        return mongoTemplate.updateFirst(BalanceCheckpoints.compactable(checkpoint),
+                BalanceCheckpoints.compact(tail), PointBalance.class)
+            .then();
+    }
+}
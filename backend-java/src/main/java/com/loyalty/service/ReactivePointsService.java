@@ -0,0 +1,137 @@
+package com.loyalty.service;
+
+import com.loyalty.model.PointTransaction;
+import com.loyalty.repository.PointTransactionRepositoryCustomImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+/**
+ * The ledger operations behind the reactive points API, written against
+ * {@link ReactiveMongoTemplate} so a request never holds a thread while it waits for Mongo.
+ * <p>
+ * Rows and balance updates are identical to {@link PointsService}; the blocking-only options
+ * (ledger lanes and EARN group commit) do not apply here.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "points.reactive.enabled", havingValue = "true")
+public class ReactivePointsService {
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ReactivePointBalanceService pointBalanceService;
+    private final ReceiptAnchorService receiptAnchorService;
+    private final PointRollupService pointRollupService;
+    private final int historyBatchSize;
+
+    public ReactivePointsService(ReactiveMongoTemplate mongoTemplate,
+                                 ReactivePointBalanceService pointBalanceService,
+                                 ReceiptAnchorService receiptAnchorService,
+                                 PointRollupService pointRollupService,
+                                 @Value("${points.export.batch-size:500}") int historyBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.pointBalanceService = pointBalanceService;
+        this.receiptAnchorService = receiptAnchorService;
+        this.pointRollupService = pointRollupService;
+        this.historyBatchSize = historyBatchSize;
+    }
+
+    public Mono<Long> getBalance(String userId) {
+        return pointBalanceService.getBalance(userId);
+    }
+
+    public Mono<PointTransaction> earnPoints(String userId, Long amount, String description) {
+        var transaction = new PointTransaction();
+        transaction.setUserId(userId);
+        transaction.setType(PointTransaction.TransactionType.EARN);
+        transaction.setAmount(amount);
+        transaction.setStatus(PointTransaction.TransactionStatus.SUCCESS);
+        transaction.setDescription(description);
+
+        return credit(transaction);
+    }
+
+    public Mono<PointTransaction> redeemPoints(String userId, Long amount, String description) {
+        var transaction = new PointTransaction();
+        transaction.setUserId(userId);
+        transaction.setType(PointTransaction.TransactionType.REDEEM);
+        transaction.setAmount(amount);
+        transaction.setStatus(PointTransaction.TransactionStatus.SUCCESS);
+        transaction.setDescription(description);
+
+        return debit(transaction);
+    }
+
+    public Mono<PointTransaction> transferPoints(String fromUserId, String toUserId, Long amount, String description) {
+        var senderTx = new PointTransaction();
+        senderTx.setUserId(fromUserId);
+        senderTx.setType(PointTransaction.TransactionType.TRANSFER);
+        senderTx.setAmount(-amount);
+        senderTx.setStatus(PointTransaction.TransactionStatus.SUCCESS);
+        senderTx.setDescription("Transfer to: " + toUserId + " - " + description);
+
+        return debit(senderTx).flatMap(sent -> {
+            var receiverTx = new PointTransaction();
+            receiverTx.setUserId(toUserId);
+            receiverTx.setType(PointTransaction.TransactionType.TRANSFER);
+            receiverTx.setAmount(amount);
+            receiverTx.setStatus(PointTransaction.TransactionStatus.SUCCESS);
+            receiverTx.setDescription("Transfer from: " + fromUserId + " - " + description);
+            receiverTx.setReferenceId(sent.getId());
+            return credit(receiverTx);
+        });
+    }
+
+    /**
+     * Streams the matching history newest first, straight from the Mongo cursor; demand from the
+     * client decides how fast batches are fetched.
+     */
+    public Flux<PointTransaction> streamHistory(String userId,
+                                                PointTransaction.TransactionType type,
+                                                PointTransaction.TransactionStatus status,
+                                                Date from,
+                                                Date to,
+                                                Integer limit) {
+        Query query = Query.query(PointTransactionRepositoryCustomImpl.historyCriteria(userId, type, status, from, to))
+            .with(Sort.by(Sort.Direction.DESC, "timestamp", "_id"))
+            .cursorBatchSize(historyBatchSize);
+        if (limit != null && limit > 0) {
+            query.limit(limit);
+        }
+        return mongoTemplate.find(query, PointTransaction.class);
+    }
+
+    private Mono<PointTransaction> credit(PointTransaction transaction) {
+        return Mono.defer(() -> {
+            transaction.setTimestamp(new Date());
+            return mongoTemplate.insert(transaction);
+        })
+            .flatMap(saved -> pointBalanceService.apply(saved).thenReturn(saved))
+            .doOnNext(pointRollupService::record)
+            .doOnNext(receiptAnchorService::submit);
+    }
+
+    /**
+     * Reserves the debit against the balance checkpoint, then records the row. The reservation is
+     * released again if the row cannot be written.
+     */
+    private Mono<PointTransaction> debit(PointTransaction transaction) {
+        return Mono.defer(() -> {
+            transaction.setId(new ObjectId().toHexString());
+            transaction.setTimestamp(new Date());
+            return pointBalanceService.debit(transaction)
+                .then(Mono.defer(() -> mongoTemplate.insert(transaction))
+                    .onErrorResume(e -> pointBalanceService.release(transaction).then(Mono.error(e))));
+        })
+            .doOnNext(pointRollupService::record)
+            .doOnNext(receiptAnchorService::submit);
+    }
+}
@@ -0,0 +1,273 @@
+package com.loyalty.service;
+
+import com.loyalty.model.AnchorBatch;
+import com.loyalty.model.PointTransaction;
+import com.loyalty.model.ReceiptProof;
+import com.loyalty.repository.AnchorBatchRepository;
+import com.loyalty.repository.PointTransactionRepository;
+import com.loyalty.repository.ReceiptProofRepository;
+import com.loyalty.service.BlockchainService.BlockchainResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Anchors transaction receipts in batches: receipts collected over {@code points.anchoring.window-ms}
+ * (or until {@code max-batch-size} is reached) become the leaves of a Merkle tree, only the root is
+ * sent to backend-go, and each receipt keeps its inclusion proof.
+ * <p>
+ * The queue is in memory and bounded by {@code queue-capacity}; receipts lost with a node, or turned
+ * away by a full queue, are found again by the recovery scan, which picks up SUCCESS rows that still
+ * have no {@code anchorBatchId}. Set {@code points.anchoring.recover-since} to when anchoring was
+ * turned on, or the scan also works through all the history before it.
+ * <p>
+ * A batch whose root could not be anchored is kept, with its batch id, and retried by the next
+ * window's flush; until then a full queue does not trigger an early flush. Nothing is written to
+ * {@code anchor_batches} before backend-go has accepted the root.
+ */
+@Service
+@Slf4j
+public class ReceiptAnchorService {
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final BlockchainService blockchainService;
+    private final PointTransactionRepository transactionRepository;
+    private final ReceiptProofRepository receiptProofRepository;
+    private final AnchorBatchRepository anchorBatchRepository;
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long recoveryAgeMs;
+    private final Date recoverSince;
+
+    private final BlockingQueue<PointTransaction> queue;
+    // Ids queued or in the retry batch, so the recovery scan does not queue them a second time
+    private final Set<String> queuedIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile Batch retry;
+    private final Executor flusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread t = new Thread(runnable, "receipt-anchor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ReceiptAnchorService(BlockchainService blockchainService,
+                                PointTransactionRepository transactionRepository,
+                                ReceiptProofRepository receiptProofRepository,
+                                AnchorBatchRepository anchorBatchRepository,
+                                MongoTemplate mongoTemplate,
+                                @Value("${points.anchoring.enabled:false}") boolean enabled,
+                                @Value("${points.anchoring.max-batch-size:1024}") int maxBatchSize,
+                                @Value("${points.anchoring.queue-capacity:100000}") int queueCapacity,
+                                @Value("${points.anchoring.recovery-age-ms:300000}") long recoveryAgeMs,
+                                @Value("${points.anchoring.recover-since:}") String recoverSince) {
+        this.blockchainService = blockchainService;
+        this.transactionRepository = transactionRepository;
+        this.receiptProofRepository = receiptProofRepository;
+        this.anchorBatchRepository = anchorBatchRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.recoveryAgeMs = recoveryAgeMs;
+        this.recoverSince = recoverSince.isBlank() ? new Date(0) : Date.from(Instant.parse(recoverSince));
+    }
+
+    public void submit(PointTransaction transaction) {
+        if (!enabled || transaction.getStatus() != PointTransaction.TransactionStatus.SUCCESS) {
+            return;
+        }
+        if (!queuedIds.add(transaction.getId())) {
+            return;
+        }
+        if (!queue.offer(transaction)) {
+            queuedIds.remove(transaction.getId());
+            log.debug("Anchoring queue is full, leaving receipt {} to the recovery scan", transaction.getId());
+            return;
+        }
+        if (queue.size() >= maxBatchSize && retry == null && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                try {
+                    flush();
+                } finally {
+                    flushScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${points.anchoring.window-ms:5000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            Batch batch = retry != null ? retry : drain();
+            retry = null;
+            while (batch != null) {
+                boolean anchored;
+                try {
+                    anchored = anchor(batch);
+                } catch (RuntimeException e) {
+                    log.warn("Storing anchoring batch {} failed, retrying it next window", batch.id(), e);
+                    anchored = false;
+                }
+                if (!anchored) {
+                    // Back off until the next window instead of spinning on an unavailable backend
+                    retry = batch;
+                    return;
+                }
+                batch = queue.size() >= maxBatchSize ? drain() : null;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${points.anchoring.recovery-interval-ms:60000}")
+    public void recoverUnanchored() {
+        if (!enabled) {
+            return;
+        }
+        List<PointTransaction> unanchored = transactionRepository.findTop500ByStatusAndAnchorBatchIdIsNullAndTimestampBetween(
+            PointTransaction.TransactionStatus.SUCCESS, recoverSince, new Date(System.currentTimeMillis() - recoveryAgeMs));
+        unanchored.forEach(this::submit);
+    }
+
+    public Optional<ReceiptVerification> verify(String transactionId) {
+        Optional<PointTransaction> transaction = transactionRepository.findById(transactionId);
+        Optional<ReceiptProof> proof = receiptProofRepository.findById(transactionId);
+        if (transaction.isEmpty() || proof.isEmpty()) {
+            return Optional.empty();
+        }
+        AnchorBatch batch = anchorBatchRepository.findById(proof.get().getBatchId()).orElse(null);
+        if (batch == null) {
+            return Optional.empty();
+        }
+
+        byte[] leafHash = leafHash(transaction.get());
+        boolean valid = batch.getStatus() == AnchorBatch.Status.ANCHORED
+            && MerkleTree.toHex(leafHash).equals(proof.get().getLeafHash())
+            && MerkleTree.verify(leafHash, proof.get().getProof(), MerkleTree.fromHex(batch.getMerkleRoot()));
+        return Optional.of(new ReceiptVerification(
+            transactionId,
+            MerkleTree.toHex(leafHash),
+            batch.getMerkleRoot(),
+            batch.getId(),
+            batch.getBlockchainTx(),
+            valid
+        ));
+    }
+
+    public record ReceiptVerification(
+        String transactionId,
+        String leafHash,
+        String merkleRoot,
+        String batchId,
+        String blockchainTx,
+        boolean valid
+    ) {}
+
+    private Batch drain() {
+        List<PointTransaction> rows = new ArrayList<>();
+        queue.drainTo(rows, maxBatchSize);
+        return rows.isEmpty() ? null : new Batch(new ObjectId().toHexString(), rows);
+    }
+
+    /**
+     * Anchors the batch and stores its proofs; false when backend-go did not take the root, in which
+     * case nothing has been written and the same batch, under the same id, can be tried again.
+     */
+    private boolean anchor(Batch pending) {
+        List<PointTransaction> batch = pending.rows();
+        List<byte[]> leaves = batch.stream().map(ReceiptAnchorService::leafHash).toList();
+        MerkleTree tree = MerkleTree.build(leaves);
+        String merkleRoot = MerkleTree.toHex(tree.root());
+
+        BlockchainResponse response = blockchainService.anchorMerkleRoot(pending.id(), merkleRoot, batch.size());
+        if (response == null || !"SUCCESS".equals(response.status())) {
+            log.warn("Anchoring batch {} of {} receipts failed, retrying it next window: {}",
+                pending.id(), batch.size(), response != null ? response.error() : "empty response");
+            return false;
+        }
+
+        // save, not insert: a retry after a failed write below stores the same batch again
+        AnchorBatch anchorBatch = anchorBatchRepository.save(AnchorBatch.builder()
+            .id(pending.id())
+            .merkleRoot(merkleRoot)
+            .size(batch.size())
+            .blockchainTx(response.txHash())
+            .status(AnchorBatch.Status.ANCHORED)
+            .createdAt(new Date())
+            .build());
+
+        List<ReceiptProof> proofs = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            proofs.add(ReceiptProof.builder()
+                .transactionId(batch.get(i).getId())
+                .batchId(anchorBatch.getId())
+                .leafIndex(i)
+                .leafHash(MerkleTree.toHex(leaves.get(i)))
+                .proof(tree.proof(i))
+                .build());
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReceiptProof.class)
+                .insert(proofs)
+                .execute();
+        } catch (BulkOperationException e) {
+            // Receipt anchored twice (e.g. by a recovery scan on another node): the first proof stays
+            if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+                throw e;
+            }
+            log.debug("{} receipts of batch {} already had a proof", e.getErrors().size(), anchorBatch.getId());
+        }
+
+        List<String> ids = batch.stream().map(PointTransaction::getId).toList();
+        mongoTemplate.updateMulti(
+            query(where("_id").in(ids).and("anchorBatchId").isNull()),
+            Update.update("anchorBatchId", anchorBatch.getId()),
+            PointTransaction.class);
+        ids.forEach(queuedIds::remove);
+        log.debug("Anchored {} receipts under root {}", batch.size(), anchorBatch.getMerkleRoot());
+        return true;
+    }
+
+    private record Batch(String id, List<PointTransaction> rows) {}
+
+    static byte[] leafHash(PointTransaction transaction) {
+        String receipt = String.join("|",
+            transaction.getId(),
+            transaction.getUserId(),
+            String.valueOf(transaction.getType()),
+            String.valueOf(transaction.getAmount()),
+            String.valueOf(transaction.getStatus()),
+            String.valueOf(transaction.getTimestamp().getTime()));
+        return MerkleTree.leaf(receipt.getBytes(StandardCharsets.UTF_8));
+    }
+}
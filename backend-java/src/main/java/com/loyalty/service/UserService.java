@@ -5,6 +5,7 @@ import com.loyalty.dto.AuthResponse;
 import com.loyalty.dto.RegisterRequest;
 import com.loyalty.model.User;
 import com.loyalty.repository.UserRepository;
+import com.loyalty.security.CredentialExecutor;
 import com.loyalty.security.JwtTokenProvider;
 import com.loyalty.security.RSAEncryptionService;
 import lombok.RequiredArgsConstructor;
@@ -23,9 +24,17 @@ public class UserService {
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
     private final RSAEncryptionService rsaEncryptionService;
+    private final CredentialExecutor credentialExecutor;
 
-    @Transactional
     public AuthResponse register(RegisterRequest request) {
+        return credentialExecutor.execute(() -> doRegister(request));
+    }
+
+    public AuthResponse login(AuthRequest request) {
+        return credentialExecutor.execute(() -> doLogin(request));
+    }
+
+    private AuthResponse doRegister(RegisterRequest request) {
         // Validate username and email
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new RuntimeException("Username already exists");
@@ -53,7 +62,7 @@ public class UserService {
         return new AuthResponse(token, user.getUsername(), user.getPoints());
     }
 
-    public AuthResponse login(AuthRequest request) {
+    private AuthResponse doLogin(AuthRequest request) {
         try {
             String decryptedPassword = rsaEncryptionService.decrypt(request.getPassword());
             Authentication authentication = authenticationManager.authenticate(
@@ -0,0 +1,191 @@
+package com.loyalty.service;
+
+import com.loyalty.model.PointTransaction;
+import com.loyalty.model.Voucher;
+import com.loyalty.repository.VoucherRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Redeems voucher codes for points.
+ * <p>
+ * Codes are first checked against a Bloom filter of active codes, so mistyped or guessed codes are
+ * turned away without reading a voucher. The filter is rebuilt on a schedule and codes saved through
+ * this node are added straight away, including saves made while a rebuild runs; until the first build
+ * every code goes to Mongo. A code the filter does not know may still belong to a voucher created
+ * since the build on another node, so it is only rejected once an existence check confirms it: a seek
+ * in the partial active-code index that finds no key and reads no voucher. Expired vouchers are
+ * deactivated in bulk over the {@code active, expiryDate} index rather than checked on every read.
+ */
+@Service
+@Slf4j
+public class VoucherRedemptionService {
+    private final VoucherRepository voucherRepository;
+    private final PointsService pointsService;
+    private final CatalogueSnapshotService catalogueSnapshotService;
+    private final MongoTemplate mongoTemplate;
+    private final double falsePositiveRate;
+    private final Counter filtered;
+    private final Counter falsePositives;
+    private final Counter found;
+
+    private final Object filterLock = new Object();
+    private volatile BloomFilter activeCodes;
+    // Codes saved while a rebuild runs, replayed into the new filter; null when no rebuild is running
+    private Set<String> savedDuringRebuild;
+
+    public VoucherRedemptionService(VoucherRepository voucherRepository,
+                                    PointsService pointsService,
+                                    CatalogueSnapshotService catalogueSnapshotService,
+                                    MongoTemplate mongoTemplate,
+                                    @Value("${points.vouchers.filter-false-positive-rate:0.001}") double falsePositiveRate,
+                                    MeterRegistry meterRegistry) {
+        this.voucherRepository = voucherRepository;
+        this.pointsService = pointsService;
+        this.catalogueSnapshotService = catalogueSnapshotService;
+        this.mongoTemplate = mongoTemplate;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filtered = lookups(meterRegistry, "filtered");
+        this.falsePositives = lookups(meterRegistry, "false_positive");
+        this.found = lookups(meterRegistry, "found");
+    }
+
+    public PointTransaction redeem(String userId, String code) {
+        String normalised = code == null ? "" : code.trim();
+        BloomFilter filter = activeCodes;
+        if (normalised.isEmpty() || (filter != null && !filter.mightContain(normalised) && !isActiveCode(normalised))) {
+            filtered.increment();
+            throw voucherNotFound();
+        }
+
+        Voucher voucher = voucherRepository.findByCodeAndActiveTrue(normalised).orElse(null);
+        if (voucher == null) {
+            falsePositives.increment();
+            throw voucherNotFound();
+        }
+        found.increment();
+        if (voucher.getExpiryDate() != null && !voucher.getExpiryDate().isAfter(LocalDateTime.now())) {
+            // Not swept yet
+            throw voucherNotFound();
+        }
+
+        PointTransaction transaction = pointsService.redeemPoints(
+            userId, voucher.getPointsCost(), "Redeem voucher: " + voucher.getCode());
+        log.debug("User {} redeemed voucher {}", userId, voucher.getCode());
+        return transaction;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuildFilter();
+        } catch (RuntimeException e) {
+            log.warn("Could not build the voucher code filter, lookups go to Mongo until the next rebuild: {}",
+                e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onVoucherSaved(AfterSaveEvent<?> event) {
+        if (!(event.getSource() instanceof Voucher voucher) || voucher.getCode() == null) {
+            return;
+        }
+        String code = voucher.getCode().trim();
+        synchronized (filterLock) {
+            if (activeCodes != null) {
+                activeCodes.put(code);
+            }
+            if (savedDuringRebuild != null) {
+                savedDuringRebuild.add(code);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${points.vouchers.filter-refresh-ms:300000}",
+               initialDelayString = "${points.vouchers.filter-refresh-ms:300000}")
+    public synchronized void rebuildFilter() {
+        synchronized (filterLock) {
+            savedDuringRebuild = new HashSet<>();
+        }
+        BloomFilter filter;
+        int size;
+        try {
+            Query activeCodeQuery = query(where("active").is(true));
+            activeCodeQuery.fields().include("code");
+            List<Voucher> active = mongoTemplate.find(activeCodeQuery, Voucher.class);
+            size = active.size();
+
+            // Headroom for codes added between rebuilds
+            filter = BloomFilter.create(active.size() * 2 + 1024, falsePositiveRate);
+            for (Voucher voucher : active) {
+                if (voucher.getCode() != null) {
+                    filter.put(voucher.getCode().trim());
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (filterLock) {
+                savedDuringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (filterLock) {
+            savedDuringRebuild.forEach(filter::put);
+            savedDuringRebuild = null;
+            activeCodes = filter;
+        }
+        log.debug("Voucher code filter rebuilt with {} codes", size);
+    }
+
+    /**
+     * Whether a code missing from the filter belongs to a voucher it has not seen yet; the only reads
+     * this costs for an unknown code are in the active-code index.
+     */
+    private boolean isActiveCode(String code) {
+        Query activeCode = query(where("code").is(code).and("active").is(true));
+        activeCode.fields().include("_id");
+        return mongoTemplate.exists(activeCode, Voucher.class);
+    }
+
+    @Scheduled(fixedDelayString = "${points.vouchers.expiry-sweep-ms:60000}")
+    public void deactivateExpired() {
+        long deactivated = mongoTemplate.updateMulti(
+            query(where("active").is(true).and("expiryDate").lte(LocalDateTime.now())),
+            Update.update("active", false),
+            Voucher.class).getModifiedCount();
+        if (deactivated > 0) {
+            log.info("Deactivated {} expired vouchers", deactivated);
+            catalogueSnapshotService.requestRefresh();
+        }
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("vouchers.lookups")
+            .tag("result", result)
+            .description("Voucher code lookups by outcome; filtered ones never read a voucher document")
+            .register(meterRegistry);
+    }
+
+    private static ResponseStatusException voucherNotFound() {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Voucher not found or expired");
+    }
+}
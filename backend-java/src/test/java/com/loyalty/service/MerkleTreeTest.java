@@ -0,0 +1,82 @@
+package com.loyalty.service;
+
+import com.loyalty.model.ReceiptProof.ProofStep;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MerkleTreeTest {
+
+    @Test
+    void everyLeafProvesAgainstTheRoot() {
+        for (int size = 1; size <= 17; size++) {
+            List<byte[]> leaves = leaves(size);
+            MerkleTree tree = MerkleTree.build(leaves);
+            for (int i = 0; i < size; i++) {
+                assertThat(MerkleTree.verify(leaves.get(i), tree.proof(i), tree.root()))
+                    .as("leaf %d of %d", i, size)
+                    .isTrue();
+            }
+        }
+    }
+
+    @Test
+    void singleLeafIsItsOwnRoot() {
+        List<byte[]> leaves = leaves(1);
+        MerkleTree tree = MerkleTree.build(leaves);
+
+        assertThat(tree.root()).isEqualTo(leaves.get(0));
+        assertThat(tree.proof(0)).isEmpty();
+    }
+
+    @Test
+    void rejectsTamperedLeafProofOrRoot() {
+        List<byte[]> leaves = leaves(5);
+        MerkleTree tree = MerkleTree.build(leaves);
+        List<ProofStep> proof = tree.proof(2);
+
+        assertThat(MerkleTree.verify(leaves.get(3), proof, tree.root())).isFalse();
+        assertThat(MerkleTree.verify(leaves.get(2), tree.proof(1), tree.root())).isFalse();
+        assertThat(MerkleTree.verify(leaves.get(2), proof, MerkleTree.build(leaves(4)).root())).isFalse();
+
+        List<ProofStep> flipped = new ArrayList<>(proof);
+        flipped.set(0, new ProofStep(proof.get(0).getHash(), !proof.get(0).isLeft()));
+        assertThat(MerkleTree.verify(leaves.get(2), flipped, tree.root())).isFalse();
+    }
+
+    @Test
+    void innerNodeCannotPassAsLeaf() {
+        List<byte[]> leaves = leaves(4);
+        MerkleTree tree = MerkleTree.build(leaves);
+        // The parent of leaves 0 and 1, with leaf 0's proof minus its first step
+        byte[] parent = MerkleTree.build(leaves.subList(0, 2)).root();
+        List<ProofStep> upper = tree.proof(0).subList(1, 2);
+
+        assertThat(MerkleTree.verify(parent, upper, tree.root())).isTrue();
+        assertThat(MerkleTree.verify(MerkleTree.leaf(parent), upper, tree.root())).isFalse();
+    }
+
+    @Test
+    void hexRoundTrips() {
+        byte[] leaf = leaves(1).get(0);
+
+        assertThat(MerkleTree.fromHex(MerkleTree.toHex(leaf))).isEqualTo(leaf);
+    }
+
+    @Test
+    void refusesEmptyTree() {
+        assertThatThrownBy(() -> MerkleTree.build(List.of())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<byte[]> leaves(int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> MerkleTree.leaf(("receipt-" + i).getBytes(StandardCharsets.UTF_8)))
+            .toList();
+    }
+}
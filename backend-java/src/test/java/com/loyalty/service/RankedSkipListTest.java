@@ -0,0 +1,89 @@
+package com.loyalty.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RankedSkipListTest {
+
+    @Test
+    void ranksByScoreDescendingThenMember() {
+        RankedSkipList list = new RankedSkipList();
+        list.insert("carol", 50);
+        list.insert("alice", 100);
+        list.insert("dave", 50);
+        list.insert("bob", 75);
+
+        assertThat(list.top(10)).containsExactly(
+            new RankedSkipList.Ranked(1, "alice", 100),
+            new RankedSkipList.Ranked(2, "bob", 75),
+            new RankedSkipList.Ranked(3, "carol", 50),
+            new RankedSkipList.Ranked(4, "dave", 50));
+        assertThat(list.rank("dave", 50)).isEqualTo(4);
+        assertThat(list.top(2)).extracting(RankedSkipList.Ranked::member).containsExactly("alice", "bob");
+    }
+
+    @Test
+    void rankIsZeroForMissingMemberOrStaleScore() {
+        RankedSkipList list = new RankedSkipList();
+        list.insert("alice", 100);
+
+        assertThat(list.rank("bob", 100)).isZero();
+        assertThat(list.rank("alice", 99)).isZero();
+        assertThat(list.delete("alice", 99)).isFalse();
+        assertThat(list.size()).isEqualTo(1);
+    }
+
+    @Test
+    void deleteThenInsertMovesMember() {
+        RankedSkipList list = new RankedSkipList();
+        list.insert("alice", 10);
+        list.insert("bob", 20);
+
+        assertThat(list.delete("alice", 10)).isTrue();
+        list.insert("alice", 30);
+
+        assertThat(list.rank("alice", 30)).isEqualTo(1);
+        assertThat(list.rank("bob", 20)).isEqualTo(2);
+        assertThat(list.size()).isEqualTo(2);
+    }
+
+    @Test
+    void matchesSortedReferenceAfterRandomChanges() {
+        Random random = new Random(42);
+        RankedSkipList list = new RankedSkipList();
+        Map<String, Long> scores = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            String member = "user" + random.nextInt(500);
+            long score = random.nextInt(200);
+            Long current = scores.get(member);
+            if (current != null) {
+                assertThat(list.delete(member, current)).isTrue();
+            }
+            if (random.nextInt(10) == 0) {
+                scores.remove(member);
+            } else {
+                list.insert(member, score);
+                scores.put(member, score);
+            }
+        }
+
+        List<Map.Entry<String, Long>> expected = new ArrayList<>(scores.entrySet());
+        expected.sort(Comparator.<Map.Entry<String, Long>>comparingLong(Map.Entry::getValue).reversed()
+            .thenComparing(Map.Entry::getKey));
+        assertThat(list.size()).isEqualTo(expected.size());
+        List<RankedSkipList.Ranked> top = list.top(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Map.Entry<String, Long> entry = expected.get(i);
+            assertThat(top.get(i)).isEqualTo(new RankedSkipList.Ranked(i + 1, entry.getKey(), entry.getValue()));
+            assertThat(list.rank(entry.getKey(), entry.getValue())).isEqualTo(i + 1);
+        }
+    }
+}